@@ -0,0 +1,112 @@
+package com.confect1on.sentinel.db;
+
+import com.confect1on.sentinel.config.SentinelConfig;
+import com.confect1on.sentinel.metrics.MetricsRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.slf4j.helpers.NOPLogger;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DatabaseManager queries against a real MySQL (or MariaDB) server.
+ *
+ * Point it at a scratch database; the schema is migrated and seeded on first run:
+ *   ./gradlew jmh -PjmhIncludes=DatabaseBenchmark -Psentinel.bench.host=127.0.0.1
+ *       -Psentinel.bench.port=3306 -Psentinel.bench.database=sentinel_bench
+ *       -Psentinel.bench.username=root -Psentinel.bench.password=...
+ *
+ * The "cached" parameter switches the in-memory caches on or off, so the same benchmark
+ * measures both the cache hit path and a full round trip to MySQL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DatabaseBenchmark {
+    private static final int ACCOUNTS = 10_000;
+
+    @Param({ "true", "false" })
+    public boolean cached;
+
+    private DatabaseManager database;
+    private UUID[] uuids;
+    private String[] discordIds;
+    private String[] usernames;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SentinelConfig config = new SentinelConfig();
+        config.mysql.host = System.getProperty("sentinel.bench.host", "127.0.0.1");
+        config.mysql.port = Integer.getInteger("sentinel.bench.port", 3306);
+        config.mysql.database = System.getProperty("sentinel.bench.database", "sentinel_bench");
+        config.mysql.username = System.getProperty("sentinel.bench.username", "root");
+        config.mysql.password = System.getProperty("sentinel.bench.password", "");
+        if (!cached) {
+            config.cache.linkTtlSeconds = 0;
+            config.cache.unlinkedTtlSeconds = 0;
+            config.linking.codeReuseSeconds = 0;
+        }
+        config.cache.warmOnStartup = false;
+
+        database = new DatabaseManager(config, new MetricsRegistry(), NOPLogger.NOP_LOGGER);
+
+        // deterministic accounts so every run (and every fork) sees the same rows
+        uuids = new UUID[ACCOUNTS];
+        discordIds = new String[ACCOUNTS];
+        usernames = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            uuids[i] = new UUID(0x5E47_1E1L, i);
+            discordIds[i] = Long.toString(900_000_000_000_000_000L + i);
+            usernames[i] = "Bench_" + i;
+            if (database.findByUuid(uuids[i]).isEmpty()) {
+                database.addLink(uuids[i], discordIds[i], usernames[i]);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Optional<LinkInfo> findByUuid() {
+        return database.findByUuid(uuids[next()]);
+    }
+
+    @Benchmark
+    public Optional<LinkInfo> findByUuidUnlinked() {
+        return database.findByUuid(new UUID(0x0DD_BA11L, next()));
+    }
+
+    @Benchmark
+    public Optional<LinkInfo> findByDiscordId() {
+        return database.findByDiscordId(discordIds[next()]);
+    }
+
+    @Benchmark
+    public Optional<LinkInfo> findByUsername() {
+        return database.findByUsername(usernames[next()]);
+    }
+
+    @Benchmark
+    public String getOrCreatePendingCode() {
+        return database.getOrCreatePendingCode(new UUID(0xC0DEL, next()), "Bench",
+                () -> Integer.toHexString(ThreadLocalRandom.current().nextInt()).toUpperCase());
+    }
+
+    private static int next() {
+        return ThreadLocalRandom.current().nextInt(ACCOUNTS);
+    }
+}
@@ -0,0 +1,153 @@
+package com.confect1on.sentinel.listener;
+
+import com.confect1on.sentinel.config.SentinelConfig;
+import com.confect1on.sentinel.db.DatabaseManager;
+import com.confect1on.sentinel.db.LinkInfo;
+import com.confect1on.sentinel.discord.DiscordManager;
+import com.confect1on.sentinel.discord.QuarantineChecker;
+import com.confect1on.sentinel.metrics.MetricsRegistry;
+import com.velocitypowered.api.event.Continuation;
+import com.velocitypowered.api.event.EventTask;
+import com.velocitypowered.api.event.ResultedEvent.ComponentResult;
+import com.velocitypowered.api.event.connection.LoginEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.util.GameProfile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.slf4j.helpers.NOPLogger;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Per-login cost of the login decision, with the database and Discord layers stubbed out,
+ * so only Sentinel's own work (and its allocations, with -prof gc) is measured.
+ *
+ * The check* benchmarks run the decision on the calling thread; onLogin* include the hand-off
+ * to the login pool and back, which is what a real login pays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LoginListenerBenchmark {
+    private final UUID linked = UUID.randomUUID();
+    private final UUID unlinked = UUID.randomUUID();
+    private final UUID quarantined = UUID.randomUUID();
+
+    private LoginListener listener;
+    private LoginEvent linkedLogin;
+    private LoginEvent bypassLogin;
+
+    @Setup
+    public void setup() {
+        SentinelConfig config = new SentinelConfig();
+        config.bypassServers.servers = new String[] { "lobby", "auth", "limbo", "hub", "queue" };
+
+        DatabaseManager database = mock(DatabaseManager.class, withSettings().stubOnly());
+        when(database.lookupByUuid(linked)).thenReturn(Optional.of(new LinkInfo(linked, "100", "Linked")));
+        when(database.lookupByUuid(quarantined)).thenReturn(Optional.of(new LinkInfo(quarantined, "200", "Quarantined")));
+        when(database.lookupByUuid(unlinked)).thenReturn(Optional.empty());
+        when(database.getOrCreatePendingCode(any(), any(), any())).thenReturn("ABC123");
+
+        QuarantineChecker checker = mock(QuarantineChecker.class, withSettings().stubOnly());
+        when(checker.isUserStillInDiscord(anyString())).thenReturn(true);
+        when(checker.isQuarantined("100")).thenReturn(false);
+        when(checker.isQuarantined("200")).thenReturn(true);
+
+        DiscordManager discord = mock(DiscordManager.class, withSettings().stubOnly());
+        when(discord.getQuarantineChecker()).thenReturn(checker);
+
+        listener = new LoginListener(database, config, discord, new MetricsRegistry(), NOPLogger.NOP_LOGGER);
+        linkedLogin = new LoginEvent(player(linked, "Linked", "play.example.net"));
+        bypassLogin = new LoginEvent(player(unlinked, "Visitor", "lobby.example.net"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        listener.shutdown();
+    }
+
+    @Benchmark
+    public ComponentResult checkLinked() {
+        return listener.checkLogin(linked, "Linked");
+    }
+
+    @Benchmark
+    public ComponentResult checkUnlinked() {
+        return listener.checkLogin(unlinked, "Unlinked");
+    }
+
+    @Benchmark
+    public ComponentResult checkQuarantined() {
+        return listener.checkLogin(quarantined, "Quarantined");
+    }
+
+    @Benchmark
+    public boolean bypassMatch() {
+        return listener.isBypassHost("queue.example.net");
+    }
+
+    @Benchmark
+    public boolean bypassMiss() {
+        return listener.isBypassHost("play.example.net");
+    }
+
+    @Benchmark
+    public String generateCode() {
+        return listener.generateCode();
+    }
+
+    @Benchmark
+    public ComponentResult onLoginLinked() throws InterruptedException {
+        return await(linkedLogin);
+    }
+
+    @Benchmark
+    public ComponentResult onLoginBypass() throws InterruptedException {
+        return await(bypassLogin);
+    }
+
+    private ComponentResult await(LoginEvent event) throws InterruptedException {
+        EventTask task = listener.onLogin(event);
+        if (task != null) {
+            CountDownLatch done = new CountDownLatch(1);
+            task.execute(new Continuation() {
+                @Override
+                public void resume() {
+                    done.countDown();
+                }
+
+                @Override
+                public void resumeWithException(Throwable exception) {
+                    done.countDown();
+                }
+            });
+            done.await();
+        }
+        return event.getResult();
+    }
+
+    private static Player player(UUID uuid, String username, String virtualHost) {
+        Player player = mock(Player.class, withSettings().stubOnly());
+        when(player.getGameProfile()).thenReturn(new GameProfile(uuid, username, List.of()));
+        when(player.getUsername()).thenReturn(username);
+        when(player.getVirtualHost()).thenReturn(Optional.of(InetSocketAddress.createUnresolved(virtualHost, 25565)));
+        return player;
+    }
+}
@@ -0,0 +1,294 @@
+package com.confect1on.sentinel.loadtest;
+
+import com.confect1on.sentinel.config.SentinelConfig;
+import com.confect1on.sentinel.db.DatabaseManager;
+import com.confect1on.sentinel.db.LinkInfo;
+import com.confect1on.sentinel.db.PoolStats;
+import com.confect1on.sentinel.discord.DiscordManager;
+import com.confect1on.sentinel.discord.QuarantineChecker;
+import com.confect1on.sentinel.listener.LoginListener;
+import com.confect1on.sentinel.metrics.LatencyHistogram;
+import com.confect1on.sentinel.metrics.MetricsRegistry;
+import com.velocitypowered.api.event.Continuation;
+import com.velocitypowered.api.event.EventTask;
+import com.velocitypowered.api.event.connection.LoginEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.util.GameProfile;
+import org.slf4j.helpers.NOPLogger;
+
+import java.net.InetSocketAddress;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Fires a synthetic join storm at LoginListener and reports what it sustained.
+ *
+ * Logins arrive at a fixed rate regardless of how fast earlier ones finish (open loop), and
+ * latency is measured from when each login was due rather than when it was sent, so a
+ * stalled listener shows up as latency instead of silently lowering the offered load.
+ *
+ * Discord is always stubbed. The database is either stubbed with a fixed latency, or a real
+ * MySQL server (sentinel.load.database=mysql, connection from sentinel.bench.*), seeded with
+ * the linked and quarantined players on first run.
+ *
+ *   ./gradlew loadTest -Psentinel.load.rate=2000 -Psentinel.load.seconds=60
+ */
+public final class JoinStorm {
+    private enum Kind { LINKED, UNLINKED, QUARANTINED, BYPASS }
+
+    private record SyntheticPlayer(Kind kind, Player player) { }
+
+    private final int rate = Integer.getInteger("sentinel.load.rate", 500);
+    private final int seconds = Integer.getInteger("sentinel.load.seconds", 30);
+    private final int players = Integer.getInteger("sentinel.load.players", 5000);
+    private final String mix = System.getProperty("sentinel.load.mix", "linked=70,unlinked=20,quarantined=5,bypass=5");
+    private final boolean realDatabase = "mysql".equals(System.getProperty("sentinel.load.database", "stub"));
+    private final long dbLatencyMillis = Long.getLong("sentinel.load.dbLatencyMillis", 2);
+    private final long discordLatencyMillis = Long.getLong("sentinel.load.discordLatencyMillis", 0);
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final LatencyHistogram latency = metrics.timer("loadtest_login_seconds", "Login latency from when the login was due");
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicInteger maxPending = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        new JoinStorm().run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        SentinelConfig config = new SentinelConfig();
+        config.bypassServers.servers = new String[] { "lobby" };
+        config.login.threads = Integer.getInteger("sentinel.load.threads", config.login.threads);
+        config.login.queueSize = Integer.getInteger("sentinel.load.queueSize", config.login.queueSize);
+
+        Map<Kind, Integer> weights = parseMix(mix);
+        SyntheticPlayer[] population = new SyntheticPlayer[players];
+        Map<UUID, LinkInfo> links = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < players; i++) {
+            Kind kind = pick(weights, random);
+            UUID uuid = new UUID(0x10AD_7E57L, i);
+            String name = "Load_" + i;
+            if (kind == Kind.LINKED || kind == Kind.QUARANTINED) {
+                String discordId = (kind == Kind.QUARANTINED ? "9" : "8") + String.format("%017d", i);
+                links.put(uuid, new LinkInfo(uuid, discordId, name));
+            }
+            String host = kind == Kind.BYPASS ? "lobby.example.net" : "play.example.net";
+            population[i] = new SyntheticPlayer(kind, player(uuid, name, host));
+        }
+
+        DatabaseManager database = realDatabase ? mysql(config, links) : stubDatabase(links);
+        LoginListener listener = new LoginListener(database, config, stubDiscord(), metrics, NOPLogger.NOP_LOGGER);
+
+        System.out.printf("Join storm: %d logins/s for %ds over %d players (%s), %s database, %d login threads%n",
+                rate, seconds, players, mix, realDatabase ? "MySQL" : "stub (" + dbLatencyMillis + "ms)", config.login.threads);
+
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        if (realDatabase) {
+            sampler.scheduleAtFixedRate(() -> samplePools(database), 100, 100, TimeUnit.MILLISECONDS);
+        }
+
+        long total = (long) rate * seconds;
+        CountDownLatch finished = new CountDownLatch((int) total);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long due = start + i * intervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            fire(listener, population[(int) (i % players)], due, finished);
+        }
+        boolean drained = finished.await(config.login.timeoutMillis + 10_000, TimeUnit.MILLISECONDS);
+        long elapsedNanos = System.nanoTime() - start;
+
+        sampler.shutdownNow();
+        listener.shutdown();
+        if (realDatabase) {
+            database.close();
+        }
+        report(total, elapsedNanos, drained);
+    }
+
+    private void fire(LoginListener listener, SyntheticPlayer player, long due, CountDownLatch finished) {
+        LoginEvent event = new LoginEvent(player.player());
+        EventTask task;
+        try {
+            task = listener.onLogin(event);
+        } catch (RuntimeException e) {
+            errors.increment();
+            finished.countDown();
+            return;
+        }
+        if (task == null) {
+            done(due, finished);
+            return;
+        }
+        task.execute(new Continuation() {
+            @Override
+            public void resume() {
+                done(due, finished);
+            }
+
+            @Override
+            public void resumeWithException(Throwable exception) {
+                errors.increment();
+                done(due, finished);
+            }
+        });
+    }
+
+    private void done(long due, CountDownLatch finished) {
+        latency.recordSince(due);
+        completed.increment();
+        finished.countDown();
+    }
+
+    private void samplePools(DatabaseManager database) {
+        for (PoolStats pool : database.getPoolStats()) {
+            maxPending.accumulateAndGet(pool.pending(), Math::max);
+            if (pool.name().endsWith("Login")) {
+                maxActive.accumulateAndGet(pool.active(), Math::max);
+            }
+        }
+    }
+
+    private void report(long total, long elapsedNanos, boolean drained) {
+        double elapsedSeconds = elapsedNanos / 1e9;
+        System.out.println();
+        System.out.printf("Completed %d of %d logins in %.1fs: %.0f logins/s%s%n", completed.sum(), total,
+                elapsedSeconds, completed.sum() / elapsedSeconds, drained ? "" : " (timed out waiting for the rest)");
+        System.out.printf("Latency ms: p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+                latency.quantileMillis(0.5), latency.quantileMillis(0.9), latency.quantileMillis(0.99),
+                latency.quantileMillis(0.999), latency.maxMillis());
+
+        System.out.println("Outcomes:");
+        metrics.counters().forEach((name, count) -> {
+            if (name.startsWith("sentinel_logins_total") && count > 0) {
+                System.out.printf("  %s: %d (%.2f%%)%n", name.substring(name.indexOf('{')), count.longValue(), 100.0 * count / total);
+            }
+        });
+        System.out.printf("  errors: %d%n", errors.sum());
+
+        System.out.println("Stages (p50 / p99 ms):");
+        metrics.timers().forEach((name, histogram) -> {
+            if (name.startsWith("sentinel_") && histogram.count() > 0) {
+                System.out.printf("  %s: %.2f / %.2f%n", name, histogram.quantileMillis(0.5), histogram.quantileMillis(0.99));
+            }
+        });
+        if (realDatabase) {
+            System.out.printf("Pools: peak %d active login connections, peak %d threads waiting%n", maxActive.get(), maxPending.get());
+        }
+    }
+
+    private DatabaseManager stubDatabase(Map<UUID, LinkInfo> links) {
+        Map<UUID, LinkInfo> table = new ConcurrentHashMap<>(links);
+        AtomicLong codes = new AtomicLong();
+        DatabaseManager database = mock(DatabaseManager.class, withSettings().stubOnly());
+        when(database.lookupByUuid(any())).thenAnswer(invocation -> {
+            pause(dbLatencyMillis);
+            return Optional.ofNullable(table.get(invocation.<UUID>getArgument(0)));
+        });
+        when(database.getOrCreatePendingCode(any(), any(), any())).thenAnswer(invocation -> {
+            pause(dbLatencyMillis);
+            return Long.toHexString(codes.incrementAndGet()).toUpperCase();
+        });
+        return database;
+    }
+
+    private DatabaseManager mysql(SentinelConfig config, Map<UUID, LinkInfo> links) {
+        config.mysql.host = System.getProperty("sentinel.bench.host", "127.0.0.1");
+        config.mysql.port = Integer.getInteger("sentinel.bench.port", 3306);
+        config.mysql.database = System.getProperty("sentinel.bench.database", "sentinel_bench");
+        config.mysql.username = System.getProperty("sentinel.bench.username", "root");
+        config.mysql.password = System.getProperty("sentinel.bench.password", "");
+        config.cache.warmOnStartup = Boolean.parseBoolean(System.getProperty("sentinel.load.warm", "false"));
+
+        DatabaseManager database = new DatabaseManager(config, metrics, NOPLogger.NOP_LOGGER);
+        int seeded = 0;
+        for (LinkInfo link : links.values()) {
+            if (database.findByUuid(link.uuid()).isEmpty() && database.addLink(link.uuid(), link.discordId(), link.username())) {
+                seeded++;
+            }
+        }
+        if (seeded > 0) {
+            System.out.printf("Seeded %d linked accounts%n", seeded);
+        }
+        database.warmUp();
+        return database;
+    }
+
+    private DiscordManager stubDiscord() {
+        QuarantineChecker checker = mock(QuarantineChecker.class, withSettings().stubOnly());
+        when(checker.isUserStillInDiscord(anyString())).thenAnswer(invocation -> {
+            pause(discordLatencyMillis);
+            return true;
+        });
+        // quarantined players' Discord IDs start with 9
+        when(checker.isQuarantined(anyString())).thenAnswer(invocation -> {
+            pause(discordLatencyMillis);
+            return invocation.<String>getArgument(0).startsWith("9");
+        });
+        DiscordManager discord = mock(DiscordManager.class, withSettings().stubOnly());
+        when(discord.getQuarantineChecker()).thenReturn(checker);
+        return discord;
+    }
+
+    private static Player player(UUID uuid, String username, String virtualHost) {
+        Player player = mock(Player.class, withSettings().stubOnly());
+        when(player.getGameProfile()).thenReturn(new GameProfile(uuid, username, List.of()));
+        when(player.getUsername()).thenReturn(username);
+        when(player.getVirtualHost()).thenReturn(Optional.of(InetSocketAddress.createUnresolved(virtualHost, 25565)));
+        return player;
+    }
+
+    private static Map<Kind, Integer> parseMix(String mix) {
+        Map<Kind, Integer> weights = new EnumMap<>(Kind.class);
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split("=");
+            weights.put(Kind.valueOf(kv[0].trim().toUpperCase()), Integer.parseInt(kv[1].trim()));
+        }
+        return weights;
+    }
+
+    private static Kind pick(Map<Kind, Integer> weights, Random random) {
+        int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+        int roll = random.nextInt(total);
+        for (Map.Entry<Kind, Integer> entry : weights.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        return Kind.LINKED;
+    }
+
+    private static void pause(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.confect1on.sentinel;
 
-import com.confect1on.sentinel.config.ConfigLoader;
+import com.confect1on.sentinel.command.SentinelCommand;
+import com.confect1on.sentinel.config.ConfigManager;
 import com.confect1on.sentinel.db.DatabaseManager;
+import com.confect1on.sentinel.db.PendingLinkReaper;
 import com.confect1on.sentinel.discord.DiscordManager;
 import com.confect1on.sentinel.listener.LoginListener;
+import com.confect1on.sentinel.metrics.MetricsRegistry;
+import com.confect1on.sentinel.metrics.MetricsServer;
 import com.google.inject.Inject;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
 import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
@@ -22,25 +26,36 @@ public class Sentinel {
     @Inject private ProxyServer server;
     @Inject @DataDirectory private Path dataDirectory;
 
+    private ConfigManager configManager;
     private DatabaseManager database;
+    private PendingLinkReaper pendingLinkReaper;
     private DiscordManager discord;
+    private LoginListener loginListener;
+    private MetricsServer metricsServer;
 
     @Subscribe
     public void onProxyInitialization(ProxyInitializeEvent event) {
         logger.info("🔌 Starting Sentinel…");
-        var config = ConfigLoader.loadConfig(dataDirectory, logger);
+        configManager = new ConfigManager(dataDirectory, logger);
+        var config = configManager.current();
+        var metrics = new MetricsRegistry();
 
         try {
-            database = new DatabaseManager(config.mysql, logger);
+            database = new DatabaseManager(config, metrics, logger);
         } catch (RuntimeException e) {
             logger.error("💥 Disabled: DB connection failed.");
             return;
         }
 
+        database.warmUp();
+
+        pendingLinkReaper = new PendingLinkReaper(database, config.linking, metrics, logger);
+        pendingLinkReaper.start();
+
         // start Discord if we have a token
         if (config.discord.token != null && !config.discord.token.isBlank()) {
             try {
-                discord = new DiscordManager(database, config.discord.token, config.discord.linkedRole, config.discord.quarantineRole, config.discord.staffRoles, server, config, logger);
+                discord = new DiscordManager(database, config.discord.token, config.discord.linkedRole, config.discord.quarantineRole, server, config, metrics, logger);
                 discord.start();
             } catch (LoginException e) {
                 logger.error("❌ Failed to start Discord bot", e);
@@ -50,13 +65,32 @@ public class Sentinel {
         }
 
         // register login guard (after Discord is initialized)
-        server.getEventManager().register(this, new LoginListener(database, config, discord, logger));
+        loginListener = new LoginListener(database, config, discord, metrics, logger);
+        server.getEventManager().register(this, loginListener);
+
+        server.getCommandManager().register(
+                server.getCommandManager().metaBuilder("sentinel").plugin(this).build(),
+                new SentinelCommand(metrics, database, configManager)
+        );
+
+        // settings that can change without a restart follow config.json from here on
+        configManager.addListener(loginListener::prepareConfig);
+        if (discord != null) {
+            configManager.addListener(discord::prepareConfig);
+        }
+        configManager.startWatching();
+        metricsServer = new MetricsServer(metrics, config.metrics, logger);
+        metricsServer.start();
 
         logger.info("✅ Sentinel up and running.");
     }
 
     @Subscribe
     public void onProxyShutdown(ProxyShutdownEvent event) {
+        if (configManager != null) configManager.shutdown();
+        if (metricsServer != null) metricsServer.shutdown();
+        if (loginListener != null) loginListener.shutdown();
+        if (pendingLinkReaper != null) pendingLinkReaper.shutdown();
         if (discord != null) discord.shutdown();
         if (database != null) {
             database.close();
@@ -0,0 +1,110 @@
+package com.confect1on.sentinel.command;
+
+import com.confect1on.sentinel.config.ConfigManager;
+import com.confect1on.sentinel.db.DatabaseManager;
+import com.confect1on.sentinel.db.PoolStats;
+import com.confect1on.sentinel.metrics.LatencyHistogram;
+import com.confect1on.sentinel.metrics.MetricsRegistry;
+import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.command.SimpleCommand;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * /sentinel admin command for the proxy console and players with sentinel.admin.
+ *
+ * /sentinel stats prints latency percentiles for every recorded stage, plus counters and
+ * connection pool state, so slow logins can be diagnosed without a metrics backend.
+ * /sentinel reload re-reads config.json without restarting the proxy.
+ */
+public class SentinelCommand implements SimpleCommand {
+    private static final String PERMISSION = "sentinel.admin";
+    private static final List<String> SUBCOMMANDS = List.of("stats", "reload");
+
+    private final MetricsRegistry metrics;
+    private final DatabaseManager database;
+    private final ConfigManager configManager;
+
+    public SentinelCommand(MetricsRegistry metrics, DatabaseManager database, ConfigManager configManager) {
+        this.metrics = metrics;
+        this.database = database;
+        this.configManager = configManager;
+    }
+
+    @Override
+    public void execute(Invocation invocation) {
+        CommandSource source = invocation.source();
+        String[] args = invocation.arguments();
+
+        if (args.length == 1 && args[0].equalsIgnoreCase("stats")) {
+            sendStats(source);
+            return;
+        }
+        if (args.length == 1 && args[0].equalsIgnoreCase("reload")) {
+            reload(source);
+            return;
+        }
+        source.sendMessage(Component.text("Usage: /sentinel <stats|reload>", NamedTextColor.RED));
+    }
+
+    @Override
+    public boolean hasPermission(Invocation invocation) {
+        return invocation.source().hasPermission(PERMISSION);
+    }
+
+    @Override
+    public List<String> suggest(Invocation invocation) {
+        String[] args = invocation.arguments();
+        if (args.length > 1) {
+            return List.of();
+        }
+        String prefix = args.length == 0 ? "" : args[0].toLowerCase();
+        return SUBCOMMANDS.stream().filter(sub -> sub.startsWith(prefix)).toList();
+    }
+
+    private void reload(CommandSource source) {
+        configManager.reload().whenComplete((result, error) -> {
+            if (error != null) {
+                source.sendMessage(Component.text("Reload failed: " + error.getMessage(), NamedTextColor.RED));
+            } else if (!result.success()) {
+                source.sendMessage(Component.text("config.json was not reloaded: " + result.error(), NamedTextColor.RED));
+            } else if (!result.restartRequired().isEmpty()) {
+                source.sendMessage(Component.text("Reloaded config.json. Changes to "
+                        + String.join(", ", result.restartRequired()) + " need a restart.", NamedTextColor.YELLOW));
+            } else {
+                source.sendMessage(Component.text("Reloaded config.json.", NamedTextColor.GREEN));
+            }
+        });
+    }
+
+    private void sendStats(CommandSource source) {
+        source.sendMessage(Component.text("Sentinel latency (count, p50 / p99 / max ms)", NamedTextColor.GOLD));
+        for (Map.Entry<String, LatencyHistogram> entry : metrics.timers().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (histogram.count() == 0) continue;
+            source.sendMessage(Component.text(String.format("  %s: %d, %.1f / %.1f / %.1f",
+                    shorten(entry.getKey()), histogram.count(),
+                    histogram.quantileMillis(0.5), histogram.quantileMillis(0.99), histogram.maxMillis())));
+        }
+
+        source.sendMessage(Component.text("Counters", NamedTextColor.GOLD));
+        for (Map.Entry<String, Double> entry : metrics.counters().entrySet()) {
+            if (entry.getValue() == 0) continue;
+            source.sendMessage(Component.text(String.format("  %s: %d", shorten(entry.getKey()), entry.getValue().longValue())));
+        }
+
+        source.sendMessage(Component.text("Connection pools (active / idle / max, waiting)", NamedTextColor.GOLD));
+        for (PoolStats pool : database.getPoolStats()) {
+            source.sendMessage(Component.text(String.format("  %s: %d / %d / %d, %d waiting; %.2fms avg wait, %d timeouts",
+                    pool.name(), pool.active(), pool.idle(), pool.maxSize(), pool.pending(),
+                    pool.avgWaitMillis(), pool.timeouts())));
+        }
+    }
+
+    private static String shorten(String metric) {
+        return metric.startsWith("sentinel_") ? metric.substring("sentinel_".length()) : metric;
+    }
+}
@@ -7,6 +7,8 @@ import org.slf4j.Logger;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ConfigLoader {
     private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
@@ -45,4 +47,42 @@ public class ConfigLoader {
             throw new RuntimeException("Could not load configuration", e);
         }
     }
+
+    /**
+     * Problems that would make the config unusable, or an empty list if there are none.
+     */
+    static List<String> validate(SentinelConfig config) {
+        List<String> problems = new ArrayList<>();
+        if (config.mysql == null || config.pool == null || config.discord == null || config.bypassServers == null
+                || config.login == null || config.cache == null || config.linking == null
+                || config.roleSync == null || config.metrics == null) {
+            problems.add("a config section is null");
+            return problems;
+        }
+        if (config.bypassServers.servers == null) {
+            problems.add("bypassServers.servers must be a list");
+        }
+        if (config.discord.staffRoles == null) {
+            problems.add("discord.staffRoles must be a list");
+        }
+        if (config.discord.quarantineMessage == null) {
+            problems.add("discord.quarantineMessage is missing");
+        }
+        if (config.login.timeoutMillis <= 0) {
+            problems.add("login.timeoutMillis must be positive");
+        }
+        if (config.linking.codeTtlSeconds <= 0) {
+            problems.add("linking.codeTtlSeconds must be positive");
+        }
+        if (config.linking.codeReuseSeconds <= 0) {
+            problems.add("linking.codeReuseSeconds must be positive");
+        }
+        if (config.mysql.port <= 0 || config.mysql.port > 65535) {
+            problems.add("mysql.port is out of range");
+        }
+        if (config.metrics.httpPort <= 0 || config.metrics.httpPort > 65535) {
+            problems.add("metrics.httpPort is out of range");
+        }
+        return problems;
+    }
 }
@@ -0,0 +1,264 @@
+package com.confect1on.sentinel.config;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds the current configuration and swaps in a new one when config.json changes,
+ * either because the file watcher saw it change or because /sentinel reload asked.
+ *
+ * A loaded SentinelConfig is never modified after it is published, so readers take it
+ * with one volatile read and no locking. Reloads are parsed and validated on their own
+ * thread, and every listener builds what it derives from the config (the bypass matcher,
+ * command permissions) there too. Only once every listener has prepared successfully is
+ * anything published; a config that fails to parse, validate or prepare is rejected as a
+ * whole and the previous one stays in place everywhere.
+ *
+ * Only some settings take effect without a restart; changes to the rest are logged.
+ */
+public class ConfigManager {
+    private static final Gson gson = new Gson();
+    // editors often save in several writes; wait for them to settle before reloading
+    private static final long SETTLE_MILLIS = 500;
+
+    private final Path dataDirectory;
+    private final Path configPath;
+    private final Logger logger;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService reloadExecutor;
+
+    private volatile SentinelConfig current;
+    // the file contents behind current, so watcher events for an unchanged file are ignored
+    private String currentJson;
+    private WatchService watchService;
+    private Thread watcher;
+
+    public ConfigManager(Path dataDirectory, Logger logger) {
+        this.dataDirectory = dataDirectory;
+        this.configPath = dataDirectory.resolve("config.json");
+        this.logger = logger;
+        this.current = ConfigLoader.loadConfig(dataDirectory, logger);
+        this.currentJson = readQuietly();
+        this.reloadExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Sentinel-ConfigReload");
+            t.setDaemon(true);
+            return t;
+        });
+
+        for (String problem : ConfigLoader.validate(current)) {
+            logger.warn("⚠️ config.json: {}", problem);
+        }
+    }
+
+    public SentinelConfig current() {
+        return current;
+    }
+
+    /**
+     * Registers a listener that prepares for every reloaded config on the reload thread,
+     * before it becomes current.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Re-reads config.json on the reload thread.
+     */
+    public CompletableFuture<ReloadResult> reload() {
+        return CompletableFuture.supplyAsync(() -> reloadNow(true), reloadExecutor);
+    }
+
+    /**
+     * Watches the data directory and reloads whenever config.json is written.
+     */
+    public void startWatching() {
+        try {
+            watchService = dataDirectory.getFileSystem().newWatchService();
+            dataDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.error("⚙️ Failed to watch {} for changes; use /sentinel reload instead", configPath, e);
+            return;
+        }
+
+        watcher = new Thread(this::watch, "Sentinel-ConfigWatcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        logger.info("⚙️ Watching {} for changes", configPath);
+    }
+
+    public void shutdown() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close config watcher", e);
+            }
+        }
+        reloadExecutor.shutdownNow();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean touched = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path changed && changed.getFileName().toString().equals("config.json")) {
+                        touched = true;
+                    }
+                }
+                key.reset();
+                if (!touched) continue;
+
+                // let the write finish, and fold the burst of events it caused into one reload
+                Thread.sleep(SETTLE_MILLIS);
+                WatchKey pending;
+                while ((pending = watchService.poll()) != null) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+                reloadExecutor.execute(() -> reloadNow(false));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignored) {
+            // shutting down
+        }
+    }
+
+    private ReloadResult reloadNow(boolean forced) {
+        String json;
+        try {
+            json = Files.readString(configPath);
+        } catch (IOException e) {
+            logger.error("⚙️ Failed to read {}", configPath, e);
+            return ReloadResult.failed("Could not read config.json: " + e.getMessage());
+        }
+        if (!forced && json.equals(currentJson)) {
+            return ReloadResult.unchanged();
+        }
+
+        SentinelConfig loaded;
+        try {
+            loaded = gson.fromJson(json, SentinelConfig.class);
+        } catch (JsonParseException e) {
+            logger.error("⚙️ config.json is not valid JSON, keeping the current config: {}", e.getMessage());
+            return ReloadResult.failed("config.json is not valid JSON: " + e.getMessage());
+        }
+        if (loaded == null) {
+            logger.error("⚙️ config.json is empty, keeping the current config");
+            return ReloadResult.failed("config.json is empty");
+        }
+        List<String> problems = ConfigLoader.validate(loaded);
+        if (!problems.isEmpty()) {
+            logger.error("⚙️ config.json was rejected, keeping the current config: {}", String.join("; ", problems));
+            return ReloadResult.failed(String.join("; ", problems));
+        }
+
+        SentinelConfig previous = current;
+        List<String> restartRequired = restartRequired(previous, loaded);
+
+        // build everything first; publish only if all of it worked
+        List<Runnable> publishes = new ArrayList<>(listeners.size());
+        for (Listener listener : listeners) {
+            try {
+                publishes.add(listener.prepare(loaded));
+            } catch (RuntimeException e) {
+                logger.error("⚙️ Failed to apply the reloaded config.json, keeping the current config", e);
+                return ReloadResult.failed("could not apply config.json: " + e.getMessage());
+            }
+        }
+        for (Runnable publish : publishes) {
+            publish.run();
+        }
+        current = loaded;
+        currentJson = json;
+
+        if (restartRequired.isEmpty()) {
+            logger.info("⚙️ Reloaded config.json");
+        } else {
+            logger.warn("⚙️ Reloaded config.json; changes to {} take effect after a restart", String.join(", ", restartRequired));
+        }
+        return ReloadResult.reloaded(restartRequired);
+    }
+
+    /**
+     * Settings that only take effect at startup and differ between the two configs.
+     */
+    private static List<String> restartRequired(SentinelConfig previous, SentinelConfig next) {
+        List<String> changed = new ArrayList<>();
+        if (differs(previous.mysql, next.mysql)) changed.add("mysql");
+        if (differs(previous.pool, next.pool)) changed.add("pool");
+        if (differs(previous.cache, next.cache)) changed.add("cache");
+        if (differs(previous.linking, next.linking)) changed.add("linking");
+        if (differs(previous.roleSync, next.roleSync)) changed.add("roleSync");
+        if (differs(previous.metrics, next.metrics)) changed.add("metrics");
+        if (differs(previous.discord.token, next.discord.token)) changed.add("discord.token");
+        if (differs(previous.discord.guildId, next.discord.guildId)) changed.add("discord.guildId");
+        if (differs(previous.discord.linkedRole, next.discord.linkedRole)) changed.add("discord.linkedRole");
+        if (differs(previous.discord.quarantineRole, next.discord.quarantineRole)) changed.add("discord.quarantineRole");
+        if (previous.login.threads != next.login.threads || previous.login.queueSize != next.login.queueSize) {
+            changed.add("login.threads/queueSize");
+        }
+        return changed;
+    }
+
+    private static boolean differs(Object previous, Object next) {
+        return !gson.toJsonTree(previous).equals(gson.toJsonTree(next));
+    }
+
+    private String readQuietly() {
+        try {
+            return Files.readString(configPath);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Something that derives state from the config.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Builds whatever is derived from the new config without publishing it, and returns
+         * the step that publishes it. Throwing rejects the reload everywhere. The returned
+         * step must not fail; it should only swap references.
+         */
+        Runnable prepare(SentinelConfig config);
+    }
+
+    /**
+     * Outcome of a reload, for /sentinel reload to report.
+     */
+    public record ReloadResult(boolean success, boolean changed, String error, List<String> restartRequired) {
+        static ReloadResult reloaded(List<String> restartRequired) {
+            return new ReloadResult(true, true, null, restartRequired);
+        }
+
+        static ReloadResult unchanged() {
+            return new ReloadResult(true, false, null, List.of());
+        }
+
+        static ReloadResult failed(String error) {
+            return new ReloadResult(false, false, error, List.of());
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package com.confect1on.sentinel.config;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class SentinelConfig {
     public MySQL mysql = new MySQL();
+    public Pool pool = new Pool();
     public Discord discord = new Discord();
     public BypassServers bypassServers = new BypassServers();
+    public Login login = new Login();
+    public Cache cache = new Cache();
+    public Linking linking = new Linking();
+    public RoleSync roleSync = new RoleSync();
+    public Metrics metrics = new Metrics();
 
     public static class MySQL {
         public String host = "localhost";
@@ -11,17 +20,78 @@ public class SentinelConfig {
         public String database = "sentinel";
         public String username = "sentinel_user";
         public String password = "change_me";
+        public int pageSize = 1000; // Rows per page (and JDBC fetch size) when walking linked_accounts
+        public boolean binaryUuids = false; // Store UUIDs as BINARY(16) instead of VARCHAR(36); existing tables are converted in place, one-way
+        public int writeBatchSize = 200; // Buffered username updates that trigger an immediate batched write
+        public long writeFlushMillis = 1000; // How often buffered username updates are written otherwise
+    }
+
+    public static class Pool {
+        public int loginMaxSize = 6; // Connections for logins and Discord commands
+        public int loginMinIdle = 2; // Idle connections kept open for logins
+        public int loginMaxSizeLimit = 16; // The login pool may grow up to this while logins queue for connections (<= loginMaxSize disables growing)
+        public long loginConnectionTimeoutMillis = 2000; // How long a login waits for a connection before giving up
+        public int backgroundMaxSize = 2; // Connections for role sync, purges and batched writes
+        public long backgroundConnectionTimeoutMillis = 30000; // How long background work waits for a connection
+        public long idleTimeoutMillis = 60000; // Idle connections above the minimum are closed after this
+        public long maxLifetimeMillis = 300000; // Connections are replaced after this (keep below MySQL's wait_timeout)
+        public long leakDetectionThresholdMillis = 0; // Log a warning when a connection is held longer than this (0 = off)
     }
 
     public static class Discord {
         public String token = "";
+        public String guildId = ""; // Guild to manage (optional; defaults to the guild with the linked/quarantine role, or the bot's only guild)
         public String linkedRole = ""; // Role ID to assign to linked players (optional)
         public String quarantineRole = ""; // Role ID that prevents login (optional)
         public String quarantineMessage = "Your account has been quarantined. Contact an administrator."; // Message shown to quarantined users
         public String[] staffRoles = new String[0]; // Role IDs that can use staff cmds (optional)
+        public Map<String, String[]> commandRoles = defaultCommandRoles(); // Per command, role IDs that may use it; "staff" = staffRoles, "everyone" = anyone; unlisted commands are staff-only
+
+        private static Map<String, String[]> defaultCommandRoles() {
+            Map<String, String[]> roles = new LinkedHashMap<>();
+            roles.put("whois", new String[]{"everyone"});
+            roles.put("quarantine", new String[]{"staff"});
+            return roles;
+        }
     }
 
     public static class BypassServers {
         public String[] servers = new String[0];
     }
+
+    public static class Login {
+        public int threads = 4; // Worker threads that run login checks off the proxy event thread
+        public int queueSize = 256; // Logins that may wait for a worker before new ones are turned away
+        public long timeoutMillis = 5000; // Overall deadline for a single login check
+        public boolean failOpenOnDatabaseError = false; // Allow login if the link lookup fails
+        public boolean failOpenOnMembershipError = true; // Allow login if the Discord membership check fails
+        public boolean failOpenOnQuarantineError = true; // Allow login if the quarantine check fails
+        public boolean failOpenOnTimeout = false; // Allow login if the check misses its deadline
+    }
+
+    public static class Cache {
+        public int maxLinks = 50000; // Linked accounts kept in memory
+        public long linkTtlSeconds = 1800; // How long a cached link is served before it is re-read from MySQL
+        public boolean warmOnStartup = true; // Load linked accounts into the cache when the proxy starts
+        public long unlinkedTtlSeconds = 30; // How long a "not linked" lookup result is remembered
+        public int maxUnlinked = 10000; // Unlinked players (and their pending codes) kept in memory
+    }
+
+    public static class Linking {
+        public long codeTtlSeconds = 900; // Link codes older than this can no longer be claimed
+        public long codeReuseSeconds = 300; // A reconnecting player keeps their link code for this long (capped at half the TTL)
+        public long purgeIntervalMinutes = 10; // How often expired codes are deleted (0 = never)
+        public int purgeBatchSize = 500; // Rows deleted per statement while purging
+    }
+
+    public static class RoleSync {
+        public long intervalMinutes = 360; // Re-run the linked role sync this often (0 = only at startup)
+        public boolean removeFromUnlinked = false; // Also take the linked role away from members who aren't linked
+    }
+
+    public static class Metrics {
+        public boolean httpEnabled = false; // Serve Prometheus metrics over HTTP
+        public String httpHost = "127.0.0.1"; // Address the metrics endpoint binds to (it has no authentication)
+        public int httpPort = 9225; // Port for http://host:port/metrics
+    }
 }
@@ -0,0 +1,99 @@
+package com.confect1on.sentinel.db;
+
+import com.confect1on.sentinel.db.Migration.Backfill;
+import com.confect1on.sentinel.db.Migration.EnsureColumn;
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Opt-in, in-place conversion of the uuid columns from VARCHAR(36) to BINARY(16).
+ *
+ * This isn't a versioned migration because it only runs when mysql.binaryUuids is enabled,
+ * and it is checked on every start so tables added by later migrations get converted too.
+ * SchemaMigrator runs it after the migrations and under the same lock, so two proxies never
+ * convert a table at once; migrations that read uuid from an existing table must therefore
+ * accept either form.
+ *
+ * Each table is converted by adding a BINARY(16) shadow column, backfilling it in batches,
+ * then swapping it in as the key. The conversion is one-way.
+ */
+final class BinaryUuidConversion {
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * A table with a uuid column, and the full primary key to rebuild around it.
+     */
+    private record UuidTable(String name, String primaryKey) { }
+
+    private static final List<UuidTable> TABLES = List.of(
+            new UuidTable("linked_accounts", "uuid"),
+            new UuidTable("pending_links", "uuid"),
+            new UuidTable("username_history", "uuid, username_lower")
+    );
+
+    private BinaryUuidConversion() {
+    }
+
+    static void run(Connection conn, Logger logger) throws SQLException {
+        for (UuidTable table : TABLES) {
+            // already converted, or not created yet by the migrations this database has run
+            String type = uuidType(conn, table.name());
+            if (type == null || "binary".equalsIgnoreCase(type)) continue;
+
+            logger.info("Converting {}.uuid to BINARY(16)…", table.name());
+            String backfill = "UPDATE " + table.name() + " SET uuid_bin = UNHEX(REPLACE(uuid, '-', '')) WHERE uuid_bin IS NULL LIMIT ?";
+            new EnsureColumn(table.name(), "uuid_bin",
+                    "ALTER TABLE " + table.name() + " ADD COLUMN uuid_bin BINARY(16) NULL").apply(conn, logger);
+            new Backfill(backfill, BATCH_SIZE).apply(conn, logger);
+            swap(conn, table, backfill, logger);
+            logger.info("✅ Converted {}.uuid to BINARY(16)", table.name());
+        }
+    }
+
+    /**
+     * Catches up on rows other proxies wrote while the backfill ran, then swaps the shadow
+     * column in. Both happen under a table write lock so no row can slip in between with an
+     * empty uuid_bin.
+     */
+    private static void swap(Connection conn, UuidTable table, String backfill, Logger logger) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("LOCK TABLES " + table.name() + " WRITE");
+            try {
+                new Backfill(backfill, BATCH_SIZE).apply(conn, logger);
+                st.executeUpdate("ALTER TABLE " + table.name()
+                        + " DROP PRIMARY KEY,"
+                        + " DROP COLUMN uuid,"
+                        + " CHANGE COLUMN uuid_bin uuid BINARY(16) NOT NULL FIRST,"
+                        + " ADD PRIMARY KEY (" + table.primaryKey() + ")");
+            } finally {
+                st.execute("UNLOCK TABLES");
+            }
+        }
+    }
+
+    /**
+     * Whether linked_accounts.uuid is stored as BINARY(16), which decides how every query binds UUIDs.
+     */
+    static boolean isBinary(Connection conn) throws SQLException {
+        return "binary".equalsIgnoreCase(uuidType(conn, "linked_accounts"));
+    }
+
+    /**
+     * The table's uuid column type, or null if the table doesn't exist.
+     */
+    private static String uuidType(Connection conn, String table) throws SQLException {
+        String sql = "SELECT data_type FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = ? AND column_name = 'uuid'";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.confect1on.sentinel.db;
+
+public record CacheStats(String name, long hits, long misses, long evictions, long expirations, int size) {
+
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+}
@@ -1,174 +1,521 @@
 package com.confect1on.sentinel.db;
 
 import com.confect1on.sentinel.config.SentinelConfig;
+import com.confect1on.sentinel.metrics.LatencyHistogram;
+import com.confect1on.sentinel.metrics.MetricsRegistry;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.slf4j.Logger;
 
 import java.sql.*;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.UUID;
 import java.util.Optional;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.Map;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class DatabaseManager {
+    private static final int MAX_CODE_ATTEMPTS = 3;
+    // the relocated driver in the plugin jar; the plain one when running from the unshaded classpath (benchmarks, load tests)
+    private static final String DRIVER_CLASS = driverClass("com.confect1on.sentinel.lib.mysql.jdbc.Driver", "com.mysql.cj.jdbc.Driver");
 
+    // logins and Discord commands; kept separate so background work can never starve a login
     private final HikariDataSource dataSource;
+    private final PoolMetrics loginMetrics = new PoolMetrics();
+    // role sync, purges, batched writes and migrations
+    private final HikariDataSource backgroundDataSource;
+    private final PoolMetrics backgroundMetrics = new PoolMetrics();
+    private final PoolSizer poolSizer;
+    private final LinkCache linkCache;
+    // every linked username, for autocomplete
+    private final UsernameIndex usernameIndex = new UsernameIndex();
+    private final UsernameWriter usernameWriter;
+    private final boolean warmLinks;
+    // UUIDs recently seen without a link, so reconnect loops don't each cost a query
+    private final ExpiringCache<UUID, Boolean> unlinkedCache;
+    // codes handed out recently, reused while they are younger than codeReuse
+    private final ExpiringCache<UUID, PendingCode> pendingCodeCache;
+    private final Duration codeReuse;
+    private final Duration codeTtl;
+    private final int pageSize;
+    // whether the uuid columns are BINARY(16); read from the schema, since a converted table stays converted
+    private final boolean binaryUuids;
     private final Logger logger;
 
-    public DatabaseManager(SentinelConfig.MySQL config, Logger logger) {
+    private final LatencyHistogram findByUuidTimer;
+    private final LatencyHistogram findByDiscordIdTimer;
+    private final LatencyHistogram findByUsernameTimer;
+    private final LatencyHistogram savePendingCodeTimer;
+    private final LatencyHistogram claimPendingTimer;
+    private final LatencyHistogram addLinkTimer;
+    private final LatencyHistogram removeLinkTimer;
+    private final LatencyHistogram purgeTimer;
+    private final LatencyHistogram writeUsernamesTimer;
+    private final LatencyHistogram linksPageTimer;
+
+    public DatabaseManager(SentinelConfig sentinelConfig, MetricsRegistry metrics, Logger logger) {
         this.logger = logger;
+        this.findByUuidTimer = queryTimer(metrics, "find_by_uuid");
+        this.findByDiscordIdTimer = queryTimer(metrics, "find_by_discord_id");
+        this.findByUsernameTimer = queryTimer(metrics, "find_by_username");
+        this.savePendingCodeTimer = queryTimer(metrics, "save_pending_code");
+        this.claimPendingTimer = queryTimer(metrics, "claim_pending");
+        this.addLinkTimer = queryTimer(metrics, "add_link");
+        this.removeLinkTimer = queryTimer(metrics, "remove_link");
+        this.purgeTimer = queryTimer(metrics, "purge_pending");
+        this.writeUsernamesTimer = queryTimer(metrics, "write_usernames");
+        this.linksPageTimer = queryTimer(metrics, "links_page");
+        this.linkCache = new LinkCache(sentinelConfig.cache.linkTtlSeconds, sentinelConfig.cache.maxLinks);
+        this.warmLinks = sentinelConfig.cache.warmOnStartup;
+        this.unlinkedCache = new ExpiringCache<>("unlinked", sentinelConfig.cache.unlinkedTtlSeconds,
+                TimeUnit.SECONDS, sentinelConfig.cache.maxUnlinked);
+        this.codeTtl = Duration.ofSeconds(sentinelConfig.linking.codeTtlSeconds);
+        // never hand out a code so old it would expire before the player gets to use it
+        this.codeReuse = Duration.ofSeconds(Math.min(sentinelConfig.linking.codeReuseSeconds, sentinelConfig.linking.codeTtlSeconds / 2));
+        this.pageSize = Math.max(1, sentinelConfig.mysql.pageSize);
+        this.pendingCodeCache = new ExpiringCache<>("pending_codes", codeReuse.toSeconds(),
+                TimeUnit.SECONDS, sentinelConfig.cache.maxUnlinked);
 
-        HikariConfig hikari = new HikariConfig();
-        hikari.setDriverClassName("com.confect1on.sentinel.lib.mysql.jdbc.Driver");
-        hikari.setJdbcUrl(String.format("jdbc:mysql://%s:%d/%s", config.host, config.port, config.database));
-        hikari.setUsername(config.username);
-        hikari.setPassword(config.password);
-        hikari.setMaximumPoolSize(5);
-        hikari.setMinimumIdle(1);
-        hikari.setConnectionTimeout(5000);
-        hikari.setIdleTimeout(60000);
-        hikari.setMaxLifetime(300000);
-        hikari.addDataSourceProperty("cachePrepStmts", "true");
-        hikari.addDataSourceProperty("prepStmtCacheSize", "250");
-        hikari.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        SentinelConfig.MySQL config = sentinelConfig.mysql;
 
+        SentinelConfig.Pool pool = sentinelConfig.pool;
+        HikariDataSource login = null;
+        HikariDataSource background = null;
         try {
-            this.dataSource = new HikariDataSource(hikari);
+            login = createPool(config, pool, "Sentinel-Login", pool.loginMaxSize, pool.loginMinIdle,
+                    pool.loginConnectionTimeoutMillis, loginMetrics);
+            background = createPool(config, pool, "Sentinel-Background", pool.backgroundMaxSize, 0,
+                    pool.backgroundConnectionTimeoutMillis, backgroundMetrics);
             // Test connection right away
-            try (Connection ignored = dataSource.getConnection()) {
+            try (Connection ignored = login.getConnection()) {
                 logger.info("✅ Sentinel successfully connected to MySQL at {}:{}",
                         config.host, config.port);
             }
         } catch (Exception e) {
             logger.error("❌ Failed to connect to MySQL at {}:{} — shutting down Sentinel",
                     config.host, config.port, e);
+            if (login != null) {
+                login.close();
+            }
+            if (background != null) {
+                background.close();
+            }
             throw new RuntimeException("Database connection failed", e);
         }
+        this.dataSource = login;
+        this.backgroundDataSource = background;
 
-        initTables();
-    }
-
-    private void initTables() {
-        // linked_accounts: UUID PK, discord_id UNIQUE (and indexed), username indexed
-        String createLinked = """
-            CREATE TABLE IF NOT EXISTS linked_accounts (
-              uuid        VARCHAR(36)  PRIMARY KEY,
-              discord_id  VARCHAR(32)  NOT NULL UNIQUE,
-              username    VARCHAR(16),
-              INDEX idx_username (username)
-            );
-            """;
-
-        // pending_links: small table, no extra indexes
-        String createPending = """
-            CREATE TABLE IF NOT EXISTS pending_links (
-              uuid        VARCHAR(36)  PRIMARY KEY,
-              code        VARCHAR(16)  NOT NULL,
-              created_at  TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP
-            );
-            """;
-
-        try (Connection conn = dataSource.getConnection();
-             Statement st = conn.createStatement()) {
-            st.executeUpdate(createLinked);
-            st.executeUpdate(createPending);
-        } catch (SQLException e) {
-            logger.error("Failed to init DB tables", e);
+        boolean binary;
+        try {
+            binary = new SchemaMigrator(backgroundDataSource, logger).migrate(config.binaryUuids);
+        } catch (SQLException | IllegalStateException e) {
+            logger.error("❌ Failed to migrate the database schema — shutting down Sentinel", e);
+            dataSource.close();
+            backgroundDataSource.close();
+            throw new RuntimeException("Database migration failed", e);
+        }
+        this.binaryUuids = binary;
+        if (binaryUuids && !config.binaryUuids) {
+            logger.warn("UUIDs are stored as BINARY(16) but mysql.binaryUuids is off; the conversion can't be undone, so binary storage stays in use");
+        }
+
+        this.poolSizer = pool.loginMaxSizeLimit > pool.loginMaxSize
+                ? new PoolSizer(dataSource, pool.loginMaxSize, pool.loginMaxSizeLimit, logger)
+                : null;
+        this.usernameWriter = new UsernameWriter(this::writeUsernames, config.writeBatchSize, config.writeFlushMillis, logger);
+        registerGauges(metrics);
+    }
+
+    private static LatencyHistogram queryTimer(MetricsRegistry metrics, String query) {
+        return metrics.timer("sentinel_db_query_seconds", "Time spent in each database query, including waiting for a connection", "query", query);
+    }
+
+    private void registerGauges(MetricsRegistry metrics) {
+        registerCache(metrics, linkCache::stats);
+        registerCache(metrics, unlinkedCache::stats);
+        registerCache(metrics, pendingCodeCache::stats);
+        registerPool(metrics, dataSource, loginMetrics);
+        registerPool(metrics, backgroundDataSource, backgroundMetrics);
+        metrics.gauge("sentinel_username_writes_pending", "Username updates waiting to be written", null, null, usernameWriter::pendingCount);
+        metrics.gauge("sentinel_usernames_indexed", "Usernames in the autocomplete index", null, null, usernameIndex::size);
+    }
+
+    private static void registerCache(MetricsRegistry metrics, Supplier<CacheStats> stats) {
+        String name = stats.get().name();
+        metrics.counter("sentinel_cache_hits_total", "Cache hits", "cache", name, () -> stats.get().hits());
+        metrics.counter("sentinel_cache_misses_total", "Cache misses", "cache", name, () -> stats.get().misses());
+        metrics.counter("sentinel_cache_evictions_total", "Entries evicted to stay within the cache's size", "cache", name, () -> stats.get().evictions());
+        metrics.counter("sentinel_cache_expirations_total", "Entries dropped because their TTL ran out", "cache", name, () -> stats.get().expirations());
+        metrics.gauge("sentinel_cache_size", "Entries in the cache", "cache", name, () -> stats.get().size());
+    }
+
+    private static void registerPool(MetricsRegistry metrics, HikariDataSource pool, PoolMetrics poolMetrics) {
+        String name = pool.getPoolName();
+        metrics.gauge("sentinel_pool_active", "Connections in use", "pool", name, () -> poolStats(pool, poolMetrics).active());
+        metrics.gauge("sentinel_pool_idle", "Idle connections", "pool", name, () -> poolStats(pool, poolMetrics).idle());
+        metrics.gauge("sentinel_pool_pending", "Threads waiting for a connection", "pool", name, () -> poolStats(pool, poolMetrics).pending());
+        metrics.gauge("sentinel_pool_max_size", "Current maximum pool size", "pool", name, () -> poolStats(pool, poolMetrics).maxSize());
+        metrics.counter("sentinel_pool_timeouts_total", "Connection requests that timed out", "pool", name, () -> poolMetrics.timeouts());
+        metrics.gauge("sentinel_pool_wait_max_seconds", "Longest wait for a connection since startup", "pool", name, () -> poolMetrics.maxWaitMillis() / 1000.0);
+    }
+
+    private static String driverClass(String... candidates) {
+        for (String candidate : candidates) {
+            try {
+                Class.forName(candidate, false, DatabaseManager.class.getClassLoader());
+                return candidate;
+            } catch (ClassNotFoundException ignored) {
+                // try the next one
+            }
         }
+        return candidates[0];
+    }
+
+    private static HikariDataSource createPool(SentinelConfig.MySQL config, SentinelConfig.Pool pool, String name,
+                                               int maxSize, int minIdle, long connectionTimeoutMillis, PoolMetrics metrics) {
+        HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName(name);
+        hikari.setDriverClassName(DRIVER_CLASS);
+        hikari.setJdbcUrl(String.format("jdbc:mysql://%s:%d/%s", config.host, config.port, config.database));
+        hikari.setUsername(config.username);
+        hikari.setPassword(config.password);
+        hikari.setMaximumPoolSize(Math.max(1, maxSize));
+        hikari.setMinimumIdle(Math.max(0, Math.min(minIdle, maxSize)));
+        hikari.setConnectionTimeout(connectionTimeoutMillis);
+        hikari.setIdleTimeout(pool.idleTimeoutMillis);
+        hikari.setMaxLifetime(pool.maxLifetimeMillis);
+        hikari.setLeakDetectionThreshold(pool.leakDetectionThresholdMillis);
+        hikari.setMetricsTrackerFactory(metrics);
+        hikari.addDataSourceProperty("cachePrepStmts", "true");
+        hikari.addDataSourceProperty("prepStmtCacheSize", "250");
+        hikari.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        // lets the driver send a batch of username updates as multi-row statements
+        hikari.addDataSourceProperty("rewriteBatchedStatements", "true");
+        return new HikariDataSource(hikari);
+    }
+
+    public List<PoolStats> getPoolStats() {
+        return List.of(poolStats(dataSource, loginMetrics), poolStats(backgroundDataSource, backgroundMetrics));
+    }
+
+    private static PoolStats poolStats(HikariDataSource pool, PoolMetrics metrics) {
+        HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+        return new PoolStats(pool.getPoolName(),
+                bean == null ? 0 : bean.getActiveConnections(),
+                bean == null ? 0 : bean.getIdleConnections(),
+                bean == null ? 0 : bean.getTotalConnections(),
+                bean == null ? 0 : bean.getThreadsAwaitingConnection(),
+                pool.getHikariConfigMXBean().getMaximumPoolSize(),
+                metrics.acquired(), metrics.timeouts(), metrics.avgWaitMillis(), metrics.maxWaitMillis());
+    }
+
+    /**
+     * Walks linked_accounts once at startup to build the username index and, if
+     * cache.warmOnStartup is set, to load linked accounts into the link cache so the first
+     * logins after a restart don't all fall through to MySQL. The link cache gets at most
+     * as many rows as it holds; the username index gets every row.
+     */
+    public void warmUp() {
+        int loaded = 0;
+        int seen = 0;
+        try {
+            for (LinkInfo link : allLinks()) {
+                seen++;
+                if (link.username() != null) {
+                    usernameIndex.put(link.uuid(), link.username());
+                }
+                if (warmLinks && loaded < linkCache.maxSize()) {
+                    linkCache.put(link);
+                    loaded++;
+                }
+            }
+            logger.info("✅ Indexed {} usernames, warmed link cache with {} linked accounts", usernameIndex.size(), loaded);
+        } catch (IllegalStateException e) {
+            logger.error("Failed to load linked accounts after {} rows", seen, e);
+        }
+    }
+
+    /**
+     * Usernames of linked players starting with the prefix, ignoring case.
+     * Served from memory, so it is cheap enough to call on every autocomplete keystroke.
+     */
+    public List<String> suggestUsernames(String prefix, int limit) {
+        return usernameIndex.search(prefix, limit);
+    }
+
+    public List<CacheStats> getCacheStats() {
+        return List.of(linkCache.stats(), unlinkedCache.stats(), pendingCodeCache.stats());
     }
 
     public boolean isLinked(UUID uuid) {
-        String query = "SELECT 1 FROM linked_accounts WHERE uuid = ?";
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(query)) {
-            ps.setString(1, uuid.toString());
+        return findByUuid(uuid).isPresent();
+    }
+
+    /**
+     * Looks up the full link for a UUID, logging database errors and treating them as "not linked".
+     * For callers with no better answer than that; the login path uses {@link #lookupByUuid}.
+     */
+    public Optional<LinkInfo> findByUuid(UUID uuid) {
+        try {
+            return lookupByUuid(uuid);
+        } catch (IllegalStateException e) {
+            logger.error("Error looking up by UUID {}", uuid, e.getCause());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Looks up the full link for a UUID in a single primary-key query.
+     * This is what the login path uses instead of isLinked + getDiscordId.
+     *
+     * @throws IllegalStateException if the database could not be queried, so the caller
+     *                               can tell an outage apart from an unlinked player
+     */
+    public Optional<LinkInfo> lookupByUuid(UUID uuid) {
+        LinkInfo cached = linkCache.getByUuid(uuid);
+        if (cached != null) return Optional.of(cached);
+        if (unlinkedCache.get(uuid) != null) return Optional.empty();
+
+        String sql = "SELECT uuid, discord_id, username FROM linked_accounts WHERE uuid = ?";
+        long start = System.nanoTime();
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            setUuid(ps, 1, uuid);
             try (ResultSet rs = ps.executeQuery()) {
-                return rs.next();
+                if (!rs.next()) {
+                    unlinkedCache.put(uuid, Boolean.TRUE);
+                    return Optional.empty();
+                }
+                LinkInfo link = readLink(rs);
+                linkCache.put(link);
+                return Optional.of(link);
             }
         } catch (SQLException e) {
-            logger.error("Failed to check linked status for UUID: {}", uuid, e);
-            return false;
+            throw new IllegalStateException("Could not look up link for " + uuid, e);
+        } finally {
+            findByUuidTimer.recordSince(start);
         }
     }
 
     /**
-     * Cache or update the player's last-seen username.
+     * Cache or update the player's last-seen username, and record it in their username history.
+     * The caches are updated right away; the database write is buffered and batched with
+     * other players' updates (see {@link UsernameWriter}).
      */
     public void updateUsername(UUID uuid, String username) {
-        String sql = "UPDATE linked_accounts SET username = ? WHERE uuid = ?";
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, username);
-            ps.setString(2, uuid.toString());
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            logger.warn("Could not update username for {}", uuid, e);
+        linkCache.updateUsername(uuid, username);
+        usernameIndex.put(uuid, username);
+        usernameWriter.enqueue(uuid, username);
+    }
+
+    /**
+     * Writes a batch of username updates in one transaction, as two JDBC batches.
+     * History rows are only inserted for UUIDs that are still linked.
+     */
+    private void writeUsernames(Map<UUID, String> batch) throws SQLException {
+        String sql = "UPDATE linked_accounts SET username = ?, username_lower = ? WHERE uuid = ?";
+        String history = "INSERT INTO username_history (uuid, username_lower, username, last_seen) "
+                + "SELECT uuid, ?, ?, CURRENT_TIMESTAMP FROM linked_accounts WHERE uuid = ? "
+                + "ON DUPLICATE KEY UPDATE username = ?, last_seen = CURRENT_TIMESTAMP";
+        long start = System.nanoTime();
+        try (Connection conn = backgroundDataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(sql);
+                 PreparedStatement hs = conn.prepareStatement(history)) {
+                for (Map.Entry<UUID, String> entry : batch.entrySet()) {
+                    String username = entry.getValue();
+                    String lower = LinkCache.normalize(username);
+                    ps.setString(1, username);
+                    ps.setString(2, lower);
+                    setUuid(ps, 3, entry.getKey());
+                    ps.addBatch();
+                    hs.setString(1, lower);
+                    hs.setString(2, username);
+                    setUuid(hs, 3, entry.getKey());
+                    hs.setString(4, username);
+                    hs.addBatch();
+                }
+                ps.executeBatch();
+                hs.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            writeUsernamesTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * Updates the cached username only when it differs from the one already stored
+     * on the link, so a returning player with an unchanged name costs no write.
+     * Returns true if a write was issued.
+     */
+    public boolean updateUsernameIfChanged(LinkInfo link, String username) {
+        if (username == null || username.equals(link.username())) {
+            return false;
+        }
+        updateUsername(link.uuid(), username);
+        return true;
+    }
+
+    /**
+     * Returns the pending link code for this UUID, reusing the one handed out last time
+     * while it is still fresh so a player retrying their login keeps seeing the same code.
+     * Otherwise stores a new code from the generator, drawing again if the code happens
+     * to be held by another player. The username is kept with the code so the link can be
+     * indexed under it as soon as the code is claimed.
+     *
+     * @throws IllegalStateException if a new code could not be stored
+     */
+    public String getOrCreatePendingCode(UUID uuid, String username, Supplier<String> codeGenerator) {
+        PendingCode pending = pendingCodeCache.get(uuid);
+        if (pending != null && pending.isYoungerThan(codeReuse)) {
+            return pending.code();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            String code = codeGenerator.get();
+            try {
+                savePendingCode(uuid, username, code);
+                pendingCodeCache.put(uuid, new PendingCode(code, Instant.now()));
+                return code;
+            } catch (SQLIntegrityConstraintViolationException e) {
+                // code already belongs to someone else
+                if (attempt >= MAX_CODE_ATTEMPTS) {
+                    throw new IllegalStateException("No free link code for " + uuid + " after " + attempt + " attempts", e);
+                }
+            } catch (SQLException e) {
+                logger.error("Failed to store pending link for {}", uuid, e);
+                throw new IllegalStateException("Could not store pending link code for " + uuid, e);
+            }
         }
     }
 
     /**
      * Inserts or rotates the pending link code for this UUID.
+     * Codes are unique, so an upsert could land on another player's row when codes collide;
+     * instead the player's old row is replaced inside one transaction, and a collision
+     * surfaces as SQLIntegrityConstraintViolationException.
      */
-    public void savePendingCode(UUID uuid, String code) {
-        String sql = """
-            INSERT INTO pending_links (uuid, code, created_at)
-            VALUES (?, ?, ?)
-            ON DUPLICATE KEY UPDATE
-              code = VALUES(code),
-              created_at = VALUES(created_at)
-            """;
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, uuid.toString());
-            ps.setString(2, code);
-            ps.setTimestamp(3, Timestamp.from(Instant.now()));
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            logger.error("Failed to store pending link for {}", uuid, e);
+    private void savePendingCode(UUID uuid, String username, String code) throws SQLException {
+        String delete = "DELETE FROM pending_links WHERE uuid = ?";
+        String insert = "INSERT INTO pending_links (uuid, code, created_at, username) VALUES (?, ?, ?, ?)";
+        long start = System.nanoTime();
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement del = conn.prepareStatement(delete);
+                 PreparedStatement ins = conn.prepareStatement(insert)) {
+                setUuid(del, 1, uuid);
+                del.executeUpdate();
+                setUuid(ins, 1, uuid);
+                ins.setString(2, code);
+                ins.setTimestamp(3, Timestamp.from(Instant.now()));
+                ins.setString(4, username);
+                ins.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            savePendingCodeTimer.recordSince(start);
         }
     }
 
     /**
      * Atomically claims a pending link code:
-     *  - looks up the UUID by code
-     *  - deletes that pending row
-     *  - returns the claimed UUID (or null if none)
+     *  - looks up the UUID by code (unique index), ignoring codes older than the code TTL
+     *  - deletes that exact row; whoever's delete removes it wins the claim, so two
+     *    concurrent /link calls can never both get the same UUID
+     *  - returns the claimed UUID and the username the code was issued to (or null if none)
      */
-    public UUID claimPending(String code) {
-        String select = "SELECT uuid FROM pending_links WHERE code = ?";
-        String delete = "DELETE FROM pending_links WHERE code = ?";
+    public PendingLink claimPending(String code) {
+        String select = "SELECT uuid, username FROM pending_links WHERE code = ? AND created_at >= ?";
+        String delete = "DELETE FROM pending_links WHERE code = ? AND uuid = ?";
+        long start = System.nanoTime();
         try (Connection conn = dataSource.getConnection()) {
             // lookup
+            UUID uuid;
+            String username;
             try (PreparedStatement ps = conn.prepareStatement(select)) {
                 ps.setString(1, code);
+                ps.setTimestamp(2, Timestamp.from(Instant.now().minus(codeTtl)));
                 try (ResultSet rs = ps.executeQuery()) {
                     if (!rs.next()) {
                         return null;
                     }
-                    UUID uuid = UUID.fromString(rs.getString("uuid"));
-                    // delete
-                    try (PreparedStatement del = conn.prepareStatement(delete)) {
-                        del.setString(1, code);
-                        del.executeUpdate();
-                    }
-                    return uuid;
+                    uuid = getUuid(rs);
+                    username = rs.getString("username");
                 }
             }
+            // claim
+            try (PreparedStatement del = conn.prepareStatement(delete)) {
+                del.setString(1, code);
+                setUuid(del, 2, uuid);
+                if (del.executeUpdate() == 0) {
+                    return null; // claimed by someone else in the meantime
+                }
+            }
+            pendingCodeCache.remove(uuid);
+            return new PendingLink(uuid, username);
         } catch (SQLException e) {
             logger.error("Failed to claim pending code {}", code, e);
             return null;
+        } finally {
+            claimPendingTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * Deletes pending codes older than the code TTL, in batches of at most batchSize rows
+     * so no single statement holds locks on a large part of the table.
+     * Returns the number of rows removed.
+     */
+    public int purgeExpiredPendingCodes(int batchSize) {
+        String sql = "DELETE FROM pending_links WHERE created_at < ? LIMIT ?";
+        Timestamp cutoff = Timestamp.from(Instant.now().minus(codeTtl));
+        int removed = 0;
+        long start = System.nanoTime();
+        try (Connection c = backgroundDataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setTimestamp(1, cutoff);
+            ps.setInt(2, batchSize);
+            int batch;
+            do {
+                batch = ps.executeUpdate();
+                removed += batch;
+            } while (batch == batchSize);
+        } catch (SQLException e) {
+            logger.error("Failed to purge expired pending codes ({} removed before the error)", removed, e);
+        } finally {
+            purgeTimer.recordSince(start);
         }
+        return removed;
     }
 
     /**
-     * Attempts to insert into linked_accounts.
+     * Attempts to insert into linked_accounts, indexing the link under the player's username
+     * when it is known (it may be null).
      * Returns false if the Discord ID is already linked, true otherwise.
      */
-    public boolean addLink(UUID uuid, String discordId) {
+    public boolean addLink(UUID uuid, String discordId, String username) {
         String check  = "SELECT 1 FROM linked_accounts WHERE discord_id = ?";
-        String insert = "INSERT INTO linked_accounts (uuid, discord_id) VALUES (?, ?)";
+        String insert = "INSERT INTO linked_accounts (uuid, discord_id, username, username_lower) VALUES (?, ?, ?, ?)";
+        String history = "INSERT IGNORE INTO username_history (uuid, username_lower, username) VALUES (?, ?, ?)";
+        long start = System.nanoTime();
         try (Connection conn = dataSource.getConnection()) {
             // ensure this Discord ID isn't already linked
             try (PreparedStatement ps = conn.prepareStatement(check)) {
@@ -180,73 +527,105 @@ public class DatabaseManager {
                 }
             }
             // insert new link
+            String lower = username == null ? null : LinkCache.normalize(username);
             try (PreparedStatement ps2 = conn.prepareStatement(insert)) {
-                ps2.setString(1, uuid.toString());
+                setUuid(ps2, 1, uuid);
                 ps2.setString(2, discordId);
+                ps2.setString(3, username);
+                ps2.setString(4, lower);
                 ps2.executeUpdate();
             }
+            if (username != null) {
+                try (PreparedStatement hs = conn.prepareStatement(history)) {
+                    setUuid(hs, 1, uuid);
+                    hs.setString(2, lower);
+                    hs.setString(3, username);
+                    hs.executeUpdate();
+                }
+                usernameIndex.put(uuid, username);
+            }
+            linkCache.put(new LinkInfo(uuid, discordId, username));
+            unlinkedCache.remove(uuid);
             return true;
         } catch (SQLException e) {
             logger.error("Failed to add link {} ↔ {}", uuid, discordId, e);
             return false;
+        } finally {
+            addLinkTimer.recordSince(start);
         }
     }
 
     public Optional<LinkInfo> findByDiscordId(String discordId) {
+        LinkInfo cached = linkCache.getByDiscordId(discordId);
+        if (cached != null) return Optional.of(cached);
+
         String sql = "SELECT uuid, discord_id, username FROM linked_accounts WHERE discord_id = ?";
+        long start = System.nanoTime();
         try (Connection c = dataSource.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setString(1, discordId);
             try (ResultSet rs = ps.executeQuery()) {
                 if (!rs.next()) return Optional.empty();
-                return Optional.of(new LinkInfo(
-                        UUID.fromString(rs.getString("uuid")),
-                        rs.getString("discord_id"),
-                        rs.getString("username")
-                ));
+                LinkInfo link = readLink(rs);
+                linkCache.put(link);
+                return Optional.of(link);
             }
         } catch (SQLException e) {
             logger.error("Error looking up by Discord ID {}", discordId, e);
             return Optional.empty();
+        } finally {
+            findByDiscordIdTimer.recordSince(start);
         }
     }
 
+    /**
+     * Looks up a linked account by Minecraft username, ignoring case.
+     * A player's current name wins; if no one currently has the name, the player most
+     * recently seen with it is returned, so staff can still find someone who renamed.
+     */
     public Optional<LinkInfo> findByUsername(String username) {
-        String sql = "SELECT uuid, discord_id, username FROM linked_accounts WHERE username = ?";
-        try (Connection c = dataSource.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, username);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) return Optional.empty();
-                return Optional.of(new LinkInfo(
-                        UUID.fromString(rs.getString("uuid")),
-                        rs.getString("discord_id"),
-                        rs.getString("username")
-                ));
+        LinkInfo cached = linkCache.getByUsername(username);
+        if (cached != null) return Optional.of(cached);
+
+        String lower = LinkCache.normalize(username);
+        String current = "SELECT uuid, discord_id, username FROM linked_accounts WHERE username_lower = ? LIMIT 1";
+        String previous = "SELECT la.uuid, la.discord_id, la.username FROM username_history h "
+                + "JOIN linked_accounts la ON la.uuid = h.uuid "
+                + "WHERE h.username_lower = ? ORDER BY h.last_seen DESC LIMIT 1";
+        long start = System.nanoTime();
+        try (Connection c = dataSource.getConnection()) {
+            for (String sql : new String[] { current, previous }) {
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    ps.setString(1, lower);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            LinkInfo link = readLink(rs);
+                            linkCache.put(link);
+                            return Optional.of(link);
+                        }
+                    }
+                }
             }
+            return Optional.empty();
         } catch (SQLException e) {
             logger.error("Error looking up by username {}", username, e);
             return Optional.empty();
+        } finally {
+            findByUsernameTimer.recordSince(start);
         }
     }
 
     /**
-     * Gets all linked accounts for role synchronization.
-     * Returns a list of all Discord IDs that should have the linked role.
+     * Iterates every linked account in UUID order, one page at a time.
+     * Each page is a separate keyset query (WHERE uuid > last ORDER BY uuid LIMIT n) on a
+     * short-lived connection, so memory stays flat however large the table gets and no
+     * connection is held while the caller works through a page.
+     *
+     * The iterator throws IllegalStateException if a page can't be read, rather than
+     * ending early and passing off a partial table as the whole thing.
      */
-    public List<String> getAllLinkedDiscordIds() {
-        String sql = "SELECT discord_id FROM linked_accounts";
-        List<String> discordIds = new ArrayList<>();
-        try (Connection c = dataSource.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                discordIds.add(rs.getString("discord_id"));
-            }
-        } catch (SQLException e) {
-            logger.error("Error getting all linked Discord IDs", e);
-        }
-        return discordIds;
+    public Iterable<LinkInfo> allLinks() {
+        return () -> new LinkPager(pageSize);
     }
 
     /**
@@ -254,15 +633,22 @@ public class DatabaseManager {
      * Used when a user leaves the Discord server.
      */
     public boolean removeLinkByDiscordId(String discordId) {
+        // resolve the UUID first so the username index can drop the player too
+        Optional<LinkInfo> link = findByDiscordId(discordId);
         String sql = "DELETE FROM linked_accounts WHERE discord_id = ?";
+        long start = System.nanoTime();
         try (Connection c = dataSource.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setString(1, discordId);
             int rowsAffected = ps.executeUpdate();
+            linkCache.invalidateDiscordId(discordId);
+            link.ifPresent(l -> usernameIndex.remove(l.uuid()));
             return rowsAffected > 0;
         } catch (SQLException e) {
             logger.error("Error removing link for Discord ID {}", discordId, e);
             return false;
+        } finally {
+            removeLinkTimer.recordSince(start);
         }
     }
 
@@ -271,22 +657,126 @@ public class DatabaseManager {
      * Returns null if the UUID is not linked.
      */
     public String getDiscordId(UUID uuid) {
-        String sql = "SELECT discord_id FROM linked_accounts WHERE uuid = ?";
-        try (Connection c = dataSource.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, uuid.toString());
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getString("discord_id");
+        return findByUuid(uuid).map(LinkInfo::discordId).orElse(null);
+    }
+
+    private class LinkPager implements Iterator<LinkInfo> {
+        private final int pageSize;
+        private final ArrayDeque<LinkInfo> page = new ArrayDeque<>();
+        private UUID lastUuid;
+        private boolean exhausted;
+
+        private LinkPager(int pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (page.isEmpty() && !exhausted) {
+                fetchPage();
+            }
+            return !page.isEmpty();
+        }
+
+        @Override
+        public LinkInfo next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.poll();
+        }
+
+        private void fetchPage() {
+            String sql = "SELECT uuid, discord_id, username FROM linked_accounts WHERE uuid > ? ORDER BY uuid LIMIT ?";
+            long start = System.nanoTime();
+            try (Connection c = backgroundDataSource.getConnection();
+                 PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setFetchSize(pageSize);
+                if (lastUuid != null) {
+                    setUuid(ps, 1, lastUuid);
+                } else if (binaryUuids) {
+                    ps.setBytes(1, new byte[0]);
+                } else {
+                    ps.setString(1, "");
+                }
+                ps.setInt(2, pageSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        LinkInfo link = readLink(rs);
+                        lastUuid = link.uuid();
+                        page.add(link);
+                    }
                 }
+            } catch (SQLException e) {
+                logger.error("Error paging linked accounts after {}", lastUuid, e);
+                throw new IllegalStateException("Failed to read linked accounts", e);
+            } finally {
+                linksPageTimer.recordSince(start);
             }
-        } catch (SQLException e) {
-            logger.error("Error getting Discord ID for UUID {}", uuid, e);
+            exhausted = page.size() < pageSize;
+        }
+    }
+
+    private LinkInfo readLink(ResultSet rs) throws SQLException {
+        return new LinkInfo(
+                getUuid(rs),
+                rs.getString("discord_id"),
+                rs.getString("username")
+        );
+    }
+
+    private void setUuid(PreparedStatement ps, int index, UUID uuid) throws SQLException {
+        if (binaryUuids) {
+            ps.setBytes(index, toBytes(uuid));
+        } else {
+            ps.setString(index, uuid.toString());
         }
-        return null;
+    }
+
+    private UUID getUuid(ResultSet rs) throws SQLException {
+        return binaryUuids ? fromBytes(rs.getBytes("uuid")) : UUID.fromString(rs.getString("uuid"));
+    }
+
+    /**
+     * Big-endian 16-byte form of a UUID, matching UNHEX(REPLACE(uuid, '-', '')).
+     */
+    static byte[] toBytes(UUID uuid) {
+        byte[] bytes = new byte[16];
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (msb >>> (56 - 8 * i));
+            bytes[i + 8] = (byte) (lsb >>> (56 - 8 * i));
+        }
+        return bytes;
+    }
+
+    static UUID fromBytes(byte[] bytes) {
+        long msb = 0;
+        long lsb = 0;
+        for (int i = 0; i < 8; i++) {
+            msb = (msb << 8) | (bytes[i] & 0xFF);
+            lsb = (lsb << 8) | (bytes[i + 8] & 0xFF);
+        }
+        return new UUID(msb, lsb);
     }
 
     public void close() {
+        // write buffered username updates while the pool is still open
+        usernameWriter.close();
+        if (poolSizer != null) {
+            poolSizer.shutdown();
+        }
+        for (CacheStats stats : getCacheStats()) {
+            logger.info("Cache {}: {} hits, {} misses ({}% hit rate), {} evictions, {} expirations",
+                    stats.name(), stats.hits(), stats.misses(), String.format("%.1f", stats.hitRate() * 100), stats.evictions(), stats.expirations());
+        }
+        for (PoolStats stats : getPoolStats()) {
+            logger.info("Pool {}: {} connections handed out, {} timeouts, {}ms average wait ({}ms max), max size {}",
+                    stats.name(), stats.acquired(), stats.timeouts(), String.format("%.2f", stats.avgWaitMillis()),
+                    String.format("%.1f", stats.maxWaitMillis()), stats.maxSize());
+        }
         dataSource.close();
+        backgroundDataSource.close();
     }
 }
@@ -0,0 +1,133 @@
+package com.confect1on.sentinel.db;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * A bounded, thread-safe map whose entries expire a fixed time after they were written.
+ * Expired entries are dropped lazily on read, and in bulk whenever the map grows past its limit.
+ */
+class ExpiringCache<K, V> {
+    private final String name;
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxSize;
+    private final BiConsumer<K, V> onEvict;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    ExpiringCache(String name, long ttl, TimeUnit unit, int maxSize) {
+        this(name, ttl, unit, maxSize, (key, value) -> { });
+    }
+
+    /**
+     * @param onEvict called for every entry dropped because it expired or the cache was full
+     */
+    ExpiringCache(String name, long ttl, TimeUnit unit, int maxSize, BiConsumer<K, V> onEvict) {
+        this.name = name;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxSize = Math.max(1, maxSize);
+        this.onEvict = onEvict;
+    }
+
+    /**
+     * Returns the live value for a key, counting the lookup as a hit or miss.
+     */
+    V get(K key) {
+        V value = peek(key);
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Returns the live value for a key without touching the hit/miss counters.
+     */
+    V peek(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            evict(key, entry, expirations);
+            return null;
+        }
+        return entry.value();
+    }
+
+    void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+        if (entries.size() > maxSize) {
+            trim();
+        }
+    }
+
+    V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        return entry == null ? null : entry.value();
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    int maxSize() {
+        return maxSize;
+    }
+
+    CacheStats stats() {
+        return new CacheStats(name, hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), entries.size());
+    }
+
+    private synchronized void trim() {
+        if (entries.size() <= maxSize) {
+            return;
+        }
+
+        // expired entries go first
+        long now = System.nanoTime();
+        for (Map.Entry<K, Entry<V>> e : entries.entrySet()) {
+            if (e.getValue().isExpired(now)) {
+                evict(e.getKey(), e.getValue(), expirations);
+            }
+        }
+
+        // still over the limit: drop arbitrary entries down to 90% so we don't trim on every put
+        int target = maxSize - maxSize / 10;
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (entries.size() > target && it.hasNext()) {
+            Map.Entry<K, Entry<V>> e = it.next();
+            evict(e.getKey(), e.getValue(), evictions);
+        }
+    }
+
+    /**
+     * Drops an entry, counting it as an expiry or an eviction to make room.
+     */
+    private void evict(K key, Entry<V> entry, LongAdder reason) {
+        if (entries.remove(key, entry)) {
+            reason.increment();
+            onEvict.accept(key, entry.value());
+        }
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+        boolean isExpired(long now) {
+            return now - expiresAt > 0;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.confect1on.sentinel.db;
+
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory copy of linked_accounts rows, looked up by UUID, Discord ID or lowercased username.
+ * Links are stored once, keyed by UUID; the Discord ID and username maps are secondary
+ * indexes that are kept in step with it, including when a link expires or is evicted.
+ *
+ * Reads of live links are lock-free. Writes, and unindexing links that expired, are
+ * synchronized so the indexes never drift from the links.
+ */
+class LinkCache {
+    private final ExpiringCache<UUID, LinkInfo> byUuid;
+    private final ConcurrentHashMap<String, UUID> byDiscordId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, UUID> byUsername = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    LinkCache(long ttlSeconds, int maxSize) {
+        this(ttlSeconds, TimeUnit.SECONDS, maxSize);
+    }
+
+    LinkCache(long ttl, TimeUnit unit, int maxSize) {
+        this.byUuid = new ExpiringCache<>("links", ttl, unit, maxSize, (uuid, link) -> onEvicted(link));
+    }
+
+    LinkInfo getByUuid(UUID uuid) {
+        return record(byUuid.peek(uuid));
+    }
+
+    LinkInfo getByDiscordId(String discordId) {
+        UUID uuid = byDiscordId.get(discordId);
+        LinkInfo link = uuid == null ? null : byUuid.peek(uuid);
+        return record(link != null && discordId.equals(link.discordId()) ? link : null);
+    }
+
+    LinkInfo getByUsername(String username) {
+        String key = normalize(username);
+        UUID uuid = byUsername.get(key);
+        LinkInfo link = uuid == null ? null : byUuid.peek(uuid);
+        return record(link != null && link.username() != null && key.equals(normalize(link.username())) ? link : null);
+    }
+
+    synchronized void put(LinkInfo link) {
+        LinkInfo previous = byUuid.peek(link.uuid());
+        if (previous != null) {
+            unindex(previous);
+        }
+        // index first, so if storing the link trims it straight back out, that eviction unindexes it
+        byDiscordId.put(link.discordId(), link.uuid());
+        if (link.username() != null) {
+            byUsername.put(normalize(link.username()), link.uuid());
+        }
+        byUuid.put(link.uuid(), link);
+    }
+
+    /**
+     * Re-keys a cached link under its new username. Does nothing if the link isn't cached.
+     */
+    synchronized void updateUsername(UUID uuid, String username) {
+        LinkInfo cached = byUuid.peek(uuid);
+        if (cached != null) {
+            put(new LinkInfo(uuid, cached.discordId(), username));
+        }
+    }
+
+    synchronized void invalidateUuid(UUID uuid) {
+        LinkInfo link = byUuid.remove(uuid);
+        if (link != null) {
+            unindex(link);
+        }
+    }
+
+    synchronized void invalidateDiscordId(String discordId) {
+        UUID uuid = byDiscordId.remove(discordId);
+        if (uuid != null) {
+            invalidateUuid(uuid);
+        }
+    }
+
+    int size() {
+        return byUuid.size();
+    }
+
+    int maxSize() {
+        return byUuid.maxSize();
+    }
+
+    CacheStats stats() {
+        CacheStats entries = byUuid.stats();
+        return new CacheStats("links", hits.sum(), misses.sum(), entries.evictions(), entries.expirations(), byUuid.size());
+    }
+
+    /**
+     * Unindexes a link that expired or was evicted. Lazy expiry happens on the lock-free read
+     * path, so a put for the same UUID can land between the entry being removed and this
+     * running; whatever that put indexed is left alone.
+     */
+    private synchronized void onEvicted(LinkInfo link) {
+        LinkInfo current = byUuid.peek(link.uuid());
+        if (current == null) {
+            unindex(link);
+            return;
+        }
+        if (!current.discordId().equals(link.discordId())) {
+            byDiscordId.remove(link.discordId(), link.uuid());
+        }
+        if (link.username() != null
+                && (current.username() == null || !normalize(current.username()).equals(normalize(link.username())))) {
+            byUsername.remove(normalize(link.username()), link.uuid());
+        }
+    }
+
+    private void unindex(LinkInfo link) {
+        byDiscordId.remove(link.discordId(), link.uuid());
+        if (link.username() != null) {
+            byUsername.remove(normalize(link.username()), link.uuid());
+        }
+    }
+
+    private LinkInfo record(LinkInfo link) {
+        if (link == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return link;
+    }
+
+    static String normalize(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+}
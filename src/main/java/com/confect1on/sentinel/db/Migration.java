@@ -0,0 +1,158 @@
+package com.confect1on.sentinel.db;
+
+import org.slf4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * One versioned schema change, made of ordered steps.
+ * MySQL commits DDL implicitly, so a migration can't be rolled back as a whole; every step
+ * is written to be safe to re-run, and a migration that failed halfway is simply retried
+ * from the top on the next start.
+ */
+record Migration(int version, String description, List<Migration.Step> steps) {
+
+    Migration(int version, String description, Step... steps) {
+        this(version, description, List.of(steps));
+    }
+
+    /**
+     * Checksum over every step's definition, recorded when the migration is applied so an
+     * edited migration is caught instead of silently diverging from databases that ran the original.
+     */
+    long checksum() {
+        CRC32 crc = new CRC32();
+        for (Step step : steps) {
+            crc.update(step.definition().getBytes(StandardCharsets.UTF_8));
+            crc.update('\n');
+        }
+        return crc.getValue();
+    }
+
+    sealed interface Step permits Sql, EnsureIndex, DropIndex, EnsureColumn, Backfill {
+        void apply(Connection conn, Logger logger) throws SQLException;
+
+        String definition();
+    }
+
+    /**
+     * A plain statement. Must be idempotent (IF NOT EXISTS and the like).
+     */
+    record Sql(String sql) implements Step {
+        @Override
+        public void apply(Connection conn, Logger logger) throws SQLException {
+            try (Statement st = conn.createStatement()) {
+                st.executeUpdate(sql);
+            }
+        }
+
+        @Override
+        public String definition() {
+            return sql;
+        }
+    }
+
+    /**
+     * Runs the DDL only if the index doesn't exist yet; MySQL has no ADD INDEX IF NOT EXISTS.
+     */
+    record EnsureIndex(String table, String index, String ddl) implements Step {
+        @Override
+        public void apply(Connection conn, Logger logger) throws SQLException {
+            String sql = "SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?";
+            if (exists(conn, sql, table, index)) return;
+            try (Statement st = conn.createStatement()) {
+                st.executeUpdate(ddl);
+            }
+            logger.info("Added index {} to {}", index, table);
+        }
+
+        @Override
+        public String definition() {
+            return ddl;
+        }
+    }
+
+    /**
+     * Drops the index only if it still exists; MySQL has no DROP INDEX IF EXISTS.
+     */
+    record DropIndex(String table, String index) implements Step {
+        @Override
+        public void apply(Connection conn, Logger logger) throws SQLException {
+            String sql = "SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?";
+            if (!exists(conn, sql, table, index)) return;
+            try (Statement st = conn.createStatement()) {
+                st.executeUpdate(definition());
+            }
+            logger.info("Dropped index {} from {}", index, table);
+        }
+
+        @Override
+        public String definition() {
+            return "DROP INDEX " + index + " ON " + table;
+        }
+    }
+
+    /**
+     * Runs the DDL only if the column doesn't exist yet.
+     */
+    record EnsureColumn(String table, String column, String ddl) implements Step {
+        @Override
+        public void apply(Connection conn, Logger logger) throws SQLException {
+            String sql = "SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?";
+            if (exists(conn, sql, table, column)) return;
+            try (Statement st = conn.createStatement()) {
+                st.executeUpdate(ddl);
+            }
+            logger.info("Added column {} to {}", column, table);
+        }
+
+        @Override
+        public String definition() {
+            return ddl;
+        }
+    }
+
+    /**
+     * An UPDATE/INSERT/DELETE ending in "LIMIT ?" that is repeated until it touches no rows.
+     * Each batch commits on its own, so a large backfill never holds locks on the whole
+     * table and logins keep running while it works.
+     */
+    record Backfill(String sql, int batchSize) implements Step {
+        @Override
+        public void apply(Connection conn, Logger logger) throws SQLException {
+            long total = 0;
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, batchSize);
+                int batch;
+                while ((batch = ps.executeUpdate()) > 0) {
+                    total += batch;
+                }
+            }
+            if (total > 0) {
+                logger.info("Backfilled {} rows", total);
+            }
+        }
+
+        @Override
+        public String definition() {
+            return sql;
+        }
+    }
+
+    private static boolean exists(Connection conn, String sql, String table, String name) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            ps.setString(2, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.confect1on.sentinel.db;
+
+import com.confect1on.sentinel.db.Migration.Backfill;
+import com.confect1on.sentinel.db.Migration.DropIndex;
+import com.confect1on.sentinel.db.Migration.EnsureColumn;
+import com.confect1on.sentinel.db.Migration.EnsureIndex;
+import com.confect1on.sentinel.db.Migration.Sql;
+
+import java.util.List;
+
+/**
+ * Every schema migration, in version order.
+ * Append new migrations to the end; never edit one that has shipped, as its checksum is
+ * recorded in schema_version and a mismatch stops Sentinel from starting.
+ *
+ * A database with mysql.binaryUuids on has had its uuid columns converted to BINARY(16) by
+ * BinaryUuidConversion, which runs after these; a step that copies uuid out of an existing
+ * table must accept both forms. New tables are created with VARCHAR(36) and converted later.
+ */
+final class Migrations {
+
+    static final List<Migration> ALL = List.of(
+            new Migration(1, "Create linked_accounts and pending_links",
+                    // linked_accounts: UUID PK, discord_id UNIQUE (and indexed), username indexed
+                    new Sql("""
+                        CREATE TABLE IF NOT EXISTS linked_accounts (
+                          uuid        VARCHAR(36)  PRIMARY KEY,
+                          discord_id  VARCHAR(32)  NOT NULL UNIQUE,
+                          username    VARCHAR(16),
+                          INDEX idx_username (username)
+                        )"""),
+                    new Sql("""
+                        CREATE TABLE IF NOT EXISTS pending_links (
+                          uuid        VARCHAR(36)  PRIMARY KEY,
+                          code        VARCHAR(16)  NOT NULL,
+                          created_at  TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP
+                        )""")
+            ),
+            new Migration(2, "Index pending_links by code and age",
+                    // created_at indexed so expired codes can be purged without a scan
+                    new EnsureIndex("pending_links", "idx_created_at",
+                            "CREATE INDEX idx_created_at ON pending_links (created_at)"),
+                    // codes shared by several players can't be claimed reliably anyway; drop them so the unique index can be built
+                    new Sql("""
+                        DELETE FROM pending_links WHERE code IN (
+                          SELECT code FROM (SELECT code FROM pending_links GROUP BY code HAVING COUNT(*) > 1) dupes
+                        )"""),
+                    // code UNIQUE so /link is an index lookup
+                    new EnsureIndex("pending_links", "uk_code",
+                            "CREATE UNIQUE INDEX uk_code ON pending_links (code)")
+            ),
+            new Migration(3, "Case-insensitive username lookups and username history",
+                    // lowercased copy of username with an explicit charset and binary collation, so lookups match exactly whatever the table's defaults are
+                    new EnsureColumn("linked_accounts", "username_lower",
+                            "ALTER TABLE linked_accounts ADD COLUMN username_lower VARCHAR(16) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL"),
+                    new Backfill("UPDATE linked_accounts SET username_lower = LOWER(username) WHERE username IS NOT NULL AND username_lower IS NULL LIMIT ?", 1000),
+                    new EnsureIndex("linked_accounts", "idx_username_lower",
+                            "CREATE INDEX idx_username_lower ON linked_accounts (username_lower)"),
+                    // nothing queries the raw username any more
+                    new DropIndex("linked_accounts", "idx_username"),
+                    // username_history: every name a linked player has been seen with, indexed by its lowercase form
+                    new Sql("""
+                        CREATE TABLE IF NOT EXISTS username_history (
+                          uuid            VARCHAR(36)  NOT NULL,
+                          username_lower  VARCHAR(16)  CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL,
+                          username        VARCHAR(16)  NOT NULL,
+                          last_seen       TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                          PRIMARY KEY (uuid, username_lower),
+                          INDEX idx_username_lower (username_lower)
+                        )"""),
+                    // linked_accounts.uuid may already be BINARY(16); write it back in its text form so the conversion can pick it up
+                    new Sql("""
+                        INSERT IGNORE INTO username_history (uuid, username_lower, username)
+                        SELECT CASE WHEN LENGTH(uuid) = 16
+                                    THEN LOWER(INSERT(INSERT(INSERT(INSERT(HEX(uuid), 21, 0, '-'), 17, 0, '-'), 13, 0, '-'), 9, 0, '-'))
+                                    ELSE uuid END,
+                               username_lower, username
+                        FROM linked_accounts WHERE username IS NOT NULL""")
+            ),
+            new Migration(4, "Keep the username a pending code was issued to",
+                    // so a claimed code can be linked and indexed under the player's name straight away
+                    new EnsureColumn("pending_links", "username",
+                            "ALTER TABLE pending_links ADD COLUMN username VARCHAR(16) NULL")
+            )
+    );
+
+    private Migrations() {
+    }
+}
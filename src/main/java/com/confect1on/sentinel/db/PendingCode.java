@@ -0,0 +1,11 @@
+package com.confect1on.sentinel.db;
+
+import java.time.Duration;
+import java.time.Instant;
+
+record PendingCode(String code, Instant createdAt) {
+
+    boolean isYoungerThan(Duration age) {
+        return createdAt.plus(age).isAfter(Instant.now());
+    }
+}
@@ -0,0 +1,9 @@
+package com.confect1on.sentinel.db;
+
+import java.util.UUID;
+
+/**
+ * A claimed link code: the player it was issued to, and their username at the time (null
+ * for codes issued before usernames were kept with them).
+ */
+public record PendingLink(UUID uuid, String username) { }
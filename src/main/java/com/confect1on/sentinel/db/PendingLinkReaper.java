@@ -0,0 +1,64 @@
+package com.confect1on.sentinel.db;
+
+import com.confect1on.sentinel.config.SentinelConfig;
+import com.confect1on.sentinel.metrics.Counter;
+import com.confect1on.sentinel.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically deletes expired rows from pending_links so the table only ever holds
+ * codes that could still be claimed.
+ */
+public class PendingLinkReaper {
+    private final DatabaseManager database;
+    private final SentinelConfig.Linking config;
+    private final Logger logger;
+
+    private final ScheduledExecutorService executor;
+    private final Counter removedCodes;
+    private final Counter runs;
+
+    public PendingLinkReaper(DatabaseManager database, SentinelConfig.Linking config, MetricsRegistry metrics, Logger logger) {
+        this.database = database;
+        this.config = config;
+        this.logger = logger;
+        this.removedCodes = metrics.counter("sentinel_pending_codes_purged_total", "Expired pending link codes deleted");
+        this.runs = metrics.counter("sentinel_pending_code_purges_total", "Runs of the expired pending link code purge");
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Sentinel-PendingLinkReaper");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void start() {
+        if (config.purgeIntervalMinutes <= 0) {
+            logger.info("Pending link purge disabled");
+            return;
+        }
+        executor.scheduleWithFixedDelay(this::purge, 1, config.purgeIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    private void purge() {
+        try {
+            long start = System.nanoTime();
+            int removed = database.purgeExpiredPendingCodes(Math.max(1, config.purgeBatchSize));
+            runs.increment();
+            removedCodes.add(removed);
+            if (removed > 0) {
+                logger.info("🧹 Purged {} expired pending link codes in {}ms ({} total since startup)",
+                        removed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), removedCodes.get());
+            }
+        } catch (Exception e) {
+            logger.error("🧹 Error purging expired pending link codes", e);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
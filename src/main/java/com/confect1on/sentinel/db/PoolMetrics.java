@@ -0,0 +1,53 @@
+package com.confect1on.sentinel.db;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long callers wait for a connection from one Hikari pool and how often they
+ * give up, which the pool itself doesn't expose. Hikari calls these hooks on the
+ * borrowing thread, so they only touch counters.
+ */
+class PoolMetrics implements MetricsTrackerFactory, IMetricsTracker {
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+
+    @Override
+    public IMetricsTracker create(String poolName, com.zaxxer.hikari.metrics.PoolStats poolStats) {
+        return this;
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquired.increment();
+        waitNanos.add(elapsedAcquiredNanos);
+        maxWaitNanos.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+
+    long acquired() {
+        return acquired.sum();
+    }
+
+    long timeouts() {
+        return timeouts.sum();
+    }
+
+    double avgWaitMillis() {
+        long count = acquired.sum();
+        return count == 0 ? 0.0 : waitNanos.sum() / (double) count / 1_000_000;
+    }
+
+    double maxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+}
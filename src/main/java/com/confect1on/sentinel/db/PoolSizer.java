@@ -0,0 +1,77 @@
+package com.confect1on.sentinel.db;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grows a pool while callers are queueing for connections and shrinks it back once it has
+ * been mostly idle for a while, between the configured size and a hard limit.
+ *
+ * Growth is immediate (by the number of waiting threads) because a join spike needs
+ * connections now; shrinking is one connection per quiet minute so a bursty load doesn't
+ * make the pool flap.
+ */
+class PoolSizer {
+    private static final long SAMPLE_SECONDS = 5;
+    private static final int QUIET_SAMPLES_TO_SHRINK = 12;
+
+    private final HikariDataSource pool;
+    private final int baseSize;
+    private final int limit;
+    private final Logger logger;
+    private final ScheduledExecutorService executor;
+
+    private int quietSamples;
+
+    PoolSizer(HikariDataSource pool, int baseSize, int limit, Logger logger) {
+        this.pool = pool;
+        this.baseSize = baseSize;
+        this.limit = limit;
+        this.logger = logger;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Sentinel-PoolSizer");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::sample, SAMPLE_SECONDS, SAMPLE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void sample() {
+        try {
+            HikariPoolMXBean stats = pool.getHikariPoolMXBean();
+            if (stats == null) return;
+            int size = pool.getHikariConfigMXBean().getMaximumPoolSize();
+            int pending = stats.getThreadsAwaitingConnection();
+
+            if (pending > 0) {
+                quietSamples = 0;
+                if (size < limit) {
+                    resize(size, Math.min(limit, size + pending), pending + " threads waiting");
+                }
+            } else if (size > baseSize && stats.getActiveConnections() <= size / 2) {
+                if (++quietSamples >= QUIET_SAMPLES_TO_SHRINK) {
+                    quietSamples = 0;
+                    resize(size, size - 1, "mostly idle");
+                }
+            } else {
+                quietSamples = 0;
+            }
+        } catch (Exception e) {
+            logger.warn("Error sampling connection pool {}", pool.getPoolName(), e);
+        }
+    }
+
+    private void resize(int from, int to, String reason) {
+        pool.getHikariConfigMXBean().setMaximumPoolSize(to);
+        logger.info("Resized connection pool {} from {} to {} ({})", pool.getPoolName(), from, to, reason);
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
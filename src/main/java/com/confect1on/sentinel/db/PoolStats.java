@@ -0,0 +1,8 @@
+package com.confect1on.sentinel.db;
+
+/**
+ * Point-in-time view of one connection pool, plus totals since startup.
+ */
+public record PoolStats(String name, int active, int idle, int total, int pending, int maxSize,
+                        long acquired, long timeouts, double avgWaitMillis, double maxWaitMillis) {
+}
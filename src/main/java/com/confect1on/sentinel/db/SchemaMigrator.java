@@ -0,0 +1,160 @@
+package com.confect1on.sentinel.db;
+
+import org.slf4j.Logger;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Brings the database schema up to date at startup.
+ *
+ * Applied migrations are recorded in schema_version with their checksum. On every start the
+ * recorded checksums are verified against the migrations this build knows, then any missing
+ * migrations run in version order, followed by the optional BINARY(16) uuid conversion. A
+ * named lock keeps two proxies sharing a database from migrating or converting at the same time.
+ */
+public class SchemaMigrator {
+    private static final String LOCK_NAME = "sentinel_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    private final DataSource dataSource;
+    private final List<Migration> migrations;
+    private final Logger logger;
+
+    public SchemaMigrator(DataSource dataSource, Logger logger) {
+        this(dataSource, Migrations.ALL, logger);
+    }
+
+    SchemaMigrator(DataSource dataSource, List<Migration> migrations, Logger logger) {
+        this.dataSource = dataSource;
+        this.migrations = migrations;
+        this.logger = logger;
+    }
+
+    /**
+     * Verifies and applies migrations, then converts uuid columns to BINARY(16) if asked to or
+     * if linked_accounts already was.
+     *
+     * @return whether UUIDs are stored as BINARY(16)
+     * @throws IllegalStateException if an applied migration's checksum changed, or the
+     *                               database was migrated by a newer Sentinel build
+     */
+    public boolean migrate(boolean binaryUuids) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            acquireLock(conn);
+            try {
+                createVersionTable(conn);
+                Map<Integer, Long> applied = readApplied(conn);
+                verify(applied);
+
+                int ran = 0;
+                for (Migration migration : migrations) {
+                    if (applied.containsKey(migration.version())) continue;
+
+                    logger.info("Applying schema migration {}: {}", migration.version(), migration.description());
+                    for (Migration.Step step : migration.steps()) {
+                        step.apply(conn, logger);
+                    }
+                    record(conn, migration);
+                    ran++;
+                }
+
+                int current = migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version();
+                if (ran > 0) {
+                    logger.info("✅ Database schema migrated to version {} ({} migrations applied)", current, ran);
+                } else {
+                    logger.debug("Database schema is up to date at version {}", current);
+                }
+
+                // once linked_accounts is converted, tables added by later migrations must follow it
+                if (binaryUuids || BinaryUuidConversion.isBinary(conn)) {
+                    BinaryUuidConversion.run(conn, logger);
+                    return true;
+                }
+                return false;
+            } finally {
+                releaseLock(conn);
+            }
+        }
+    }
+
+    private void verify(Map<Integer, Long> applied) {
+        Map<Integer, Migration> known = new HashMap<>();
+        for (Migration migration : migrations) {
+            known.put(migration.version(), migration);
+        }
+
+        for (Map.Entry<Integer, Long> entry : applied.entrySet()) {
+            Migration migration = known.get(entry.getKey());
+            if (migration == null) {
+                throw new IllegalStateException("Database schema version " + entry.getKey()
+                        + " is not known to this Sentinel build; was it migrated by a newer version?");
+            }
+            if (migration.checksum() != entry.getValue()) {
+                throw new IllegalStateException("Checksum mismatch for schema migration " + entry.getKey()
+                        + " (" + migration.description() + "); applied migrations must not be edited");
+            }
+        }
+    }
+
+    private void createVersionTable(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS schema_version (
+                  version      INT          PRIMARY KEY,
+                  description  VARCHAR(128) NOT NULL,
+                  checksum     BIGINT       NOT NULL,
+                  applied_at   TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP
+                )""");
+        }
+    }
+
+    private Map<Integer, Long> readApplied(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getLong("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private void record(Connection conn, Migration migration) throws SQLException {
+        String sql = "INSERT INTO schema_version (version, description, checksum) VALUES (?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, migration.version());
+            ps.setString(2, migration.description());
+            ps.setLong(3, migration.checksum());
+            ps.executeUpdate();
+        }
+    }
+
+    private void acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Timed out waiting for another instance to finish migrating the schema");
+                }
+            }
+        }
+    }
+
+    private void releaseLock(Connection conn) {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            logger.warn("Could not release schema migration lock", e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.confect1on.sentinel.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sorted in-memory index of every linked player's username, for prefix search.
+ * Unlike the link cache it holds all linked accounts and never expires, so slash-command
+ * autocomplete can answer each keystroke without touching MySQL.
+ *
+ * Keys are "lowercased name \0 uuid", so players who share a name don't overwrite each
+ * other and a prefix query is a single range scan.
+ */
+class UsernameIndex {
+    private final NavigableMap<String, String> byName = new ConcurrentSkipListMap<>();
+    private final Map<UUID, String> keys = new ConcurrentHashMap<>();
+
+    synchronized void put(UUID uuid, String username) {
+        String key = LinkCache.normalize(username) + '\0' + uuid;
+        String previous = keys.put(uuid, key);
+        if (previous != null && !previous.equals(key)) {
+            byName.remove(previous);
+        }
+        byName.put(key, username);
+    }
+
+    synchronized void remove(UUID uuid) {
+        String key = keys.remove(uuid);
+        if (key != null) {
+            byName.remove(key);
+        }
+    }
+
+    /**
+     * Up to limit usernames starting with the prefix (ignoring case), in alphabetical order.
+     */
+    List<String> search(String prefix, int limit) {
+        String from = LinkCache.normalize(prefix);
+        List<String> matches = new ArrayList<>(Math.min(limit, 32));
+        for (Map.Entry<String, String> entry : byName.tailMap(from, true).entrySet()) {
+            if (matches.size() >= limit || !entry.getKey().startsWith(from)) break;
+            matches.add(entry.getValue());
+        }
+        return matches;
+    }
+
+    int size() {
+        return keys.size();
+    }
+}
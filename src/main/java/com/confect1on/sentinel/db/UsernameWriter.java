@@ -0,0 +1,114 @@
+package com.confect1on.sentinel.db;
+
+import org.slf4j.Logger;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind buffer for username updates.
+ * Updates are coalesced per UUID (only the newest name is written) and handed to the
+ * flusher as one batch, either on a timer or as soon as batchSize players are waiting,
+ * so a burst of logins costs a handful of batched writes instead of one round trip each.
+ *
+ * A batch that fails is put back, without overwriting names that arrived since, and
+ * retried on the next flush.
+ */
+class UsernameWriter {
+    interface Flusher {
+        void write(Map<UUID, String> batch) throws SQLException;
+    }
+
+    private final Flusher flusher;
+    private final int batchSize;
+    private final Logger logger;
+
+    private final ConcurrentHashMap<UUID, String> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+    private final ScheduledExecutorService executor;
+
+    UsernameWriter(Flusher flusher, int batchSize, long flushIntervalMillis, Logger logger) {
+        this.flusher = flusher;
+        this.batchSize = Math.max(1, batchSize);
+        this.logger = logger;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Sentinel-UsernameWriter");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(100, flushIntervalMillis);
+        executor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    void enqueue(UUID uuid, String username) {
+        if (executor.isShutdown()) {
+            // closed while a login was still being checked; the name is refreshed on their next login
+            logger.debug("Dropped username update for {} after shutdown", uuid);
+            return;
+        }
+        pending.put(uuid, username);
+        if (pending.size() >= batchSize && flushQueued.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    flushQueued.set(false);
+                    flush();
+                });
+            } catch (RejectedExecutionException e) {
+                // closed just now; close() writes whatever made it into pending
+                flushQueued.set(false);
+            }
+        }
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Stops the timer and writes whatever is still buffered, on the calling thread.
+     * A flush already running is left to finish rather than interrupted mid-write.
+     */
+    void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("Username writer is still flushing after 5s; waiting for it before the final flush");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // synchronized with any flush still in progress, so this runs after it
+        flush();
+        if (!pending.isEmpty()) {
+            logger.warn("Dropped {} username updates that could not be written on shutdown", pending.size());
+        }
+    }
+
+    private synchronized void flush() {
+        while (!pending.isEmpty()) {
+            Map<UUID, String> batch = new LinkedHashMap<>();
+            for (Map.Entry<UUID, String> entry : pending.entrySet()) {
+                if (batch.size() >= batchSize) break;
+                batch.put(entry.getKey(), entry.getValue());
+            }
+            // only take the names that are still the newest; a later one stays queued
+            batch.entrySet().removeIf(entry -> !pending.remove(entry.getKey(), entry.getValue()));
+
+            try {
+                flusher.write(batch);
+            } catch (SQLException | RuntimeException e) {
+                batch.forEach(pending::putIfAbsent);
+                logger.warn("Could not write {} username updates, will retry", batch.size(), e);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.confect1on.sentinel.discord;
+
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import org.slf4j.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs slash command handlers off JDA's event threads, so a burst of commands waiting on
+ * MySQL never holds up the gateway.
+ *
+ * Uses a virtual thread per command when the JVM has them (Java 21+; looked up reflectively
+ * since the plugin targets 17), otherwise a small fixed pool. Either way the database pool
+ * is what bounds how many commands actually hit MySQL at once.
+ */
+final class CommandExecutor {
+    private static final int FALLBACK_THREADS = 8;
+
+    private final ExecutorService executor;
+    private final Logger logger;
+
+    CommandExecutor(Logger logger) {
+        this.logger = logger;
+        this.executor = create(logger);
+    }
+
+    /**
+     * Acknowledges the interaction without waiting for Discord, then runs the handler here
+     * once the acknowledgement went through. Errors the handler throws are reported to the
+     * user and logged; handling time is recorded however it ends.
+     */
+    void deferThen(SlashCommandInteractionEvent event, boolean ephemeral, CommandMetrics metrics, long start, Consumer<InteractionHook> handler) {
+        deferThenAsync(event, ephemeral, metrics, start, hook -> {
+            handler.accept(hook);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Like {@link #deferThen}, for handlers that hand work off (to Discord, the action queue)
+     * and finish after they return. Handling time is recorded when the returned stage
+     * completes; a stage that fails is reported like a thrown error.
+     */
+    void deferThenAsync(SlashCommandInteractionEvent event, boolean ephemeral, CommandMetrics metrics, long start,
+                        Function<InteractionHook, CompletionStage<?>> handler) {
+        event.deferReply(ephemeral).queue(hook -> {
+            metrics.acknowledged(event);
+            execute(() -> {
+                CompletionStage<?> done;
+                try {
+                    done = handler.apply(hook);
+                } catch (Exception e) {
+                    done = CompletableFuture.failedFuture(e);
+                }
+                done.whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        hook.sendMessage("❌ An error occurred while processing the command.").queue();
+                        logger.error("❌ Error in /{} command", event.getName(), e);
+                    }
+                    metrics.handledSince(start);
+                });
+            });
+        }, error -> {
+            logger.error("❌ Failed to defer /{} interaction", event.getName(), error);
+            metrics.handledSince(start);
+        });
+    }
+
+    void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Dropped a command task during shutdown");
+        }
+    }
+
+    void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ExecutorService create(Logger logger) {
+        try {
+            ExecutorService virtual = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            logger.info("[Sentinel] Running Discord commands on virtual threads");
+            return virtual;
+        } catch (ReflectiveOperationException e) {
+            // Java 17-20
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                FALLBACK_THREADS, FALLBACK_THREADS,
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "Sentinel-Command-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+        );
+        // commands are bursty; don't keep idle threads around between bursts
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
@@ -0,0 +1,36 @@
+package com.confect1on.sentinel.discord;
+
+import com.confect1on.sentinel.metrics.LatencyHistogram;
+import com.confect1on.sentinel.metrics.MetricsRegistry;
+import net.dv8tion.jda.api.interactions.Interaction;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+
+/**
+ * Latency of one slash command: how long the handler takes, and how long after Discord
+ * created the interaction it was acknowledged, which is what counts against the 3s window.
+ */
+final class CommandMetrics {
+    private final LatencyHistogram handled;
+    private final LatencyHistogram acknowledged;
+
+    CommandMetrics(MetricsRegistry metrics, String command) {
+        this.handled = metrics.timer("sentinel_command_seconds", "Time to handle a slash command", "command", command);
+        this.acknowledged = metrics.timer("sentinel_command_ack_seconds",
+                "Time from Discord creating an interaction to Sentinel acknowledging it", "command", command);
+    }
+
+    void handledSince(long startNanos) {
+        handled.recordSince(startNanos);
+    }
+
+    /**
+     * Records the acknowledgement delay. Measured against Discord's timestamp, so it includes
+     * gateway latency and any clock skew with Discord.
+     */
+    void acknowledged(Interaction interaction) {
+        Duration delay = Duration.between(interaction.getTimeCreated(), OffsetDateTime.now());
+        acknowledged.record(Math.max(0, delay.toNanos()));
+    }
+}
@@ -0,0 +1,277 @@
+package com.confect1on.sentinel.discord;
+
+import com.confect1on.sentinel.metrics.Counter;
+import com.confect1on.sentinel.metrics.LatencyHistogram;
+import com.confect1on.sentinel.metrics.MetricsRegistry;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.UserSnowflake;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.requests.RestAction;
+import org.slf4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The one place role changes are sent to Discord from.
+ *
+ * Pending changes are keyed by member and role. A second change for the same pair is merged
+ * into the first: the same change twice is sent once, and an add followed by a remove (or the
+ * reverse) replaces the earlier change, so only the latest one is sent. Interactive changes
+ * (a fresh /link, /quarantine) are sent before any background sync work.
+ *
+ * One request is in flight at a time and JDA's rate-limit buckets pace it. On top of that
+ * the gap between requests adapts: it doubles whenever a request comes back slowly (JDA held
+ * it for a rate limit, or Discord is struggling) and shrinks step by step while requests are
+ * fast, so a long sync backs off before it starts competing with interactive commands.
+ */
+public class DiscordActionQueue {
+    // a request slower than this was most likely held back by a rate limit
+    private static final long SLOW_MILLIS = 1000;
+    private static final long GAP_STEP_MILLIS = 50;
+    private static final long MAX_GAP_MILLIS = 5000;
+    private static final String LATENCY_HELP = "Time from queueing a Discord action to Discord applying it";
+    private static final String RESULT_HELP = "Discord actions by outcome";
+
+    public enum Priority { INTERACTIVE, BACKGROUND }
+
+    private final Logger logger;
+    private final ScheduledExecutorService executor;
+
+    private final Map<Key, Action> pending = new HashMap<>();
+    private final Deque<Action> interactive = new ArrayDeque<>();
+    private final Deque<Action> background = new ArrayDeque<>();
+    private boolean sending;
+    private volatile long gapMillis;
+
+    private final LatencyHistogram interactiveLatency;
+    private final LatencyHistogram backgroundLatency;
+    private final Counter applied;
+    private final Counter failed;
+    private final Counter coalesced;
+
+    public DiscordActionQueue(MetricsRegistry metrics, Logger logger) {
+        this.logger = logger;
+        this.interactiveLatency = metrics.timer("sentinel_discord_action_seconds", LATENCY_HELP, "priority", "interactive");
+        this.backgroundLatency = metrics.timer("sentinel_discord_action_seconds", LATENCY_HELP, "priority", "background");
+        this.applied = metrics.counter("sentinel_discord_actions_total", RESULT_HELP, "result", "applied");
+        this.failed = metrics.counter("sentinel_discord_actions_total", RESULT_HELP, "result", "failed");
+        this.coalesced = metrics.counter("sentinel_discord_actions_total", RESULT_HELP, "result", "coalesced");
+        metrics.gauge("sentinel_discord_actions_queued", "Discord actions waiting to be sent", "priority", "interactive", () -> queued(Priority.INTERACTIVE));
+        metrics.gauge("sentinel_discord_actions_queued", "Discord actions waiting to be sent", "priority", "background", () -> queued(Priority.BACKGROUND));
+        metrics.gauge("sentinel_discord_action_gap_millis", "Current pause between Discord actions", null, null, () -> gapMillis);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Sentinel-DiscordActions");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Queues adding or removing a role. The future completes with true once Discord has
+     * applied the change, with false if a later opposite change replaced it, and
+     * exceptionally if Discord rejected it or the queue shut down first.
+     */
+    public CompletableFuture<Boolean> changeRole(Role role, long userId, boolean add, Priority priority) {
+        if (executor.isShutdown()) {
+            return CompletableFuture.failedFuture(new CancellationException("Discord action queue shut down"));
+        }
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        Key key = new Key(userId, role.getIdLong());
+        Action superseded = null;
+
+        synchronized (this) {
+            Action existing = pending.get(key);
+            if (existing == null) {
+                Action action = new Action(key, role, add, priority, System.nanoTime());
+                action.callers.add(result);
+                pending.put(key, action);
+                (priority == Priority.INTERACTIVE ? interactive : background).addLast(action);
+            } else if (existing.add == add) {
+                // already on its way; share its outcome, and let it jump the queue if this caller is waiting
+                existing.callers.add(result);
+                if (priority == Priority.INTERACTIVE && existing.priority == Priority.BACKGROUND) {
+                    existing.priority = Priority.INTERACTIVE;
+                    interactive.addLast(existing);
+                }
+            } else {
+                // the later change wins; adding or removing a role is idempotent at Discord, so
+                // sending it is right whatever the member's current roles are
+                Action action = new Action(key, role, add, priority, System.nanoTime());
+                action.callers.add(result);
+                pending.put(key, action);
+                (priority == Priority.INTERACTIVE ? interactive : background).addLast(action);
+                superseded = existing;
+            }
+            if (!sending) {
+                sending = true;
+                executor.execute(this::sendNext);
+            }
+        }
+
+        if (superseded != null) {
+            coalesced.add(superseded.callers.size());
+            superseded.complete(false);
+        }
+        return result;
+    }
+
+    /**
+     * Sends the next pending action. The next one is only sent once this one completes,
+     * so there is never more than one request in flight.
+     */
+    private void sendNext() {
+        Action action;
+        synchronized (this) {
+            action = poll(interactive);
+            if (action == null) {
+                action = poll(background);
+            }
+            if (action == null) {
+                sending = false;
+                return;
+            }
+        }
+
+        long sent = System.nanoTime();
+        try {
+            Guild guild = action.role.getGuild();
+            UserSnowflake user = UserSnowflake.fromId(action.key.userId());
+            RestAction<Void> request = action.add
+                    ? guild.addRoleToMember(user, action.role)
+                    : guild.removeRoleFromMember(user, action.role);
+
+            request.queue(
+                    success -> {
+                        applied.add(action.callers.size());
+                        action.complete(true);
+                        onSent(action, sent, false);
+                    },
+                    error -> {
+                        failed.add(action.callers.size());
+                        logger.debug("🔗 Discord rejected {} role {} for user {}: {}",
+                                action.add ? "adding" : "removing", action.role.getName(), action.key.userId(), error.getMessage());
+                        action.fail(error);
+                        // an error response is Discord answering; anything else (timeouts, I/O) is a sign to slow down
+                        onSent(action, sent, !(error instanceof ErrorResponseException));
+                    }
+            );
+        } catch (RuntimeException e) {
+            // JDA checks permissions and role hierarchy up front and throws instead of queueing
+            failed.add(action.callers.size());
+            logger.warn("🔗 Could not {} role {} for user {}: {}",
+                    action.add ? "add" : "remove", action.role.getName(), action.key.userId(), e.getMessage());
+            action.fail(e);
+            onSent(action, sent, false);
+        }
+    }
+
+    /**
+     * Records the action's latency, adapts the gap and schedules the next send. Callers
+     * complete the action first, so a queue shut down meanwhile can't leave it unresolved.
+     */
+    private void onSent(Action action, long sentNanos, boolean struggling) {
+        (action.priority == Priority.INTERACTIVE ? interactiveLatency : backgroundLatency).recordSince(action.queuedNanos);
+
+        long tookMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sentNanos);
+        long gap = gapMillis;
+        if (struggling || tookMillis > SLOW_MILLIS) {
+            gap = Math.min(MAX_GAP_MILLIS, Math.max(GAP_STEP_MILLIS, gap * 2));
+        } else {
+            gap = Math.max(0, gap - GAP_STEP_MILLIS);
+        }
+        gapMillis = gap;
+
+        try {
+            if (gap == 0) {
+                executor.execute(this::sendNext);
+            } else {
+                executor.schedule(this::sendNext, gap, TimeUnit.MILLISECONDS);
+            }
+        } catch (RejectedExecutionException e) {
+            // shut down while this action was in flight; shutdown() already failed everything still queued
+        }
+    }
+
+    /**
+     * Takes the next action that is still pending; promoted or superseded entries are skipped.
+     */
+    private Action poll(Deque<Action> queue) {
+        Action action;
+        while ((action = queue.poll()) != null) {
+            if (pending.get(action.key) == action) {
+                pending.remove(action.key);
+                return action;
+            }
+        }
+        return null;
+    }
+
+    private synchronized int queued(Priority priority) {
+        int count = 0;
+        for (Action action : pending.values()) {
+            if (action.priority == priority) count++;
+        }
+        return count;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        List<Action> dropped;
+        synchronized (this) {
+            dropped = new ArrayList<>(pending.values());
+            pending.clear();
+            interactive.clear();
+            background.clear();
+        }
+        if (!dropped.isEmpty()) {
+            logger.info("🔗 Dropping {} queued Discord action(s) on shutdown", dropped.size());
+            CancellationException cancelled = new CancellationException("Discord action queue shut down");
+            for (Action action : dropped) {
+                action.fail(cancelled);
+            }
+        }
+    }
+
+    private record Key(long userId, long roleId) { }
+
+    private static final class Action {
+        private final Key key;
+        private final Role role;
+        private final boolean add;
+        private final long queuedNanos;
+        private final List<CompletableFuture<Boolean>> callers = new ArrayList<>(1);
+        private volatile Priority priority;
+
+        private Action(Key key, Role role, boolean add, Priority priority, long queuedNanos) {
+            this.key = key;
+            this.role = role;
+            this.add = add;
+            this.priority = priority;
+            this.queuedNanos = queuedNanos;
+        }
+
+        private void complete(boolean appliedChange) {
+            for (CompletableFuture<Boolean> caller : callers) {
+                caller.complete(appliedChange);
+            }
+        }
+
+        private void fail(Throwable error) {
+            for (CompletableFuture<Boolean> caller : callers) {
+                caller.completeExceptionally(error);
+            }
+        }
+    }
+}
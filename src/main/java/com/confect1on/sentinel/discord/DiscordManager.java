@@ -2,11 +2,14 @@ package com.confect1on.sentinel.discord;
 
 import com.confect1on.sentinel.db.DatabaseManager;
 import com.confect1on.sentinel.config.SentinelConfig;
+import com.confect1on.sentinel.metrics.MetricsRegistry;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.events.session.ReadyEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.MemberCachePolicy;
 import com.velocitypowered.api.proxy.ProxyServer;
 import org.slf4j.Logger;
 
@@ -19,31 +22,50 @@ public class DiscordManager extends ListenerAdapter {
     private final String token;
     private final String linkedRoleId;
     private final String quarantineRoleId;
+    private final SentinelConfig config;
+    private final MetricsRegistry metrics;
 
     private final LinkCommandListener linkListener;
     private final WhoIsCommandListener whoisListener;
     private final QuarantineCommandListener quarantineListener;
+    private final GuildMemberIndex memberIndex;
+    private final GuildContext guildContext;
+    private final DiscordActionQueue actionQueue;
+    private final CommandExecutor commandExecutor;
+    private final StaffPermissions permissions;
+    private final QuarantineEnforcer quarantineEnforcer;
     private RoleManager roleManager;
     private QuarantineChecker quarantineChecker;
 
     private JDA jda;
 
-    public DiscordManager(DatabaseManager db, String token, String linkedRoleId, String quarantineRoleId, String[] staffRoles, ProxyServer proxyServer, SentinelConfig config, Logger logger) {
+    public DiscordManager(DatabaseManager db, String token, String linkedRoleId, String quarantineRoleId, ProxyServer proxyServer, SentinelConfig config, MetricsRegistry metrics, Logger logger) {
         this.db = db;
         this.token = token;
         this.linkedRoleId = linkedRoleId;
         this.quarantineRoleId = quarantineRoleId;
+        this.config = config;
+        this.metrics = metrics;
         this.logger = logger;
 
-        this.linkListener = new LinkCommandListener(db, logger);
-        this.whoisListener = new WhoIsCommandListener(db, logger);
-        this.quarantineListener = new QuarantineCommandListener(db, quarantineRoleId, staffRoles, proxyServer, config, logger);
+        this.permissions = new StaffPermissions(config.discord, logger);
+        this.commandExecutor = new CommandExecutor(logger);
+        this.linkListener = new LinkCommandListener(db, commandExecutor, metrics, logger);
+        this.whoisListener = new WhoIsCommandListener(db, permissions, commandExecutor, metrics, logger);
+        this.guildContext = new GuildContext(config.discord.guildId, linkedRoleId, quarantineRoleId, logger);
+        this.memberIndex = new GuildMemberIndex(guildContext, logger);
+        this.actionQueue = new DiscordActionQueue(metrics, logger);
+        this.quarantineEnforcer = new QuarantineEnforcer(db, guildContext, memberIndex, proxyServer, config, logger);
+        this.quarantineListener = new QuarantineCommandListener(db, quarantineRoleId, permissions, quarantineEnforcer, guildContext, actionQueue, commandExecutor, metrics, logger);
     }
 
     public void start() throws LoginException {
+        // Cache and chunk every member so role changes arrive as events and the member index stays complete
         jda = JDABuilder.createDefault(token)
                 .enableIntents(GatewayIntent.GUILD_MEMBERS)
-                .addEventListeners(linkListener, whoisListener, quarantineListener, this)
+                .setMemberCachePolicy(MemberCachePolicy.ALL)
+                .setChunkingFilter(ChunkingFilter.ALL)
+                .addEventListeners(guildContext, memberIndex, quarantineEnforcer, linkListener, whoisListener, quarantineListener, this)
                 .build();
 
         // Register both /link and /whois commands
@@ -62,7 +84,7 @@ public class DiscordManager extends ListenerAdapter {
     public void onReady(@Nonnull ReadyEvent event) {
         // Initialize role manager once JDA is ready
         if (linkedRoleId != null && !linkedRoleId.isBlank()) {
-            roleManager = new RoleManager(db, jda, linkedRoleId, logger);
+            roleManager = new RoleManager(db, guildContext, actionQueue, linkedRoleId, config.roleSync, metrics, logger);
             roleManager.startRoleSynchronization();
             
             // Set the role manager in the link listener so it can assign roles to new links
@@ -70,7 +92,19 @@ public class DiscordManager extends ListenerAdapter {
         }
         
         // Initialize quarantine checker
-        quarantineChecker = new QuarantineChecker(db, jda, quarantineRoleId, logger);
+        quarantineChecker = new QuarantineChecker(db, jda, memberIndex, guildContext, quarantineRoleId, logger);
+    }
+
+    /**
+     * Prepares the settings that can change without a restart, the command roles and quarantine
+     * message; the returned step publishes them.
+     */
+    public Runnable prepareConfig(SentinelConfig config) {
+        Runnable permissionsUpdate = permissions.prepare(config.discord);
+        return () -> {
+            permissionsUpdate.run();
+            quarantineEnforcer.applyConfig(config);
+        };
     }
 
     /**
@@ -84,6 +118,9 @@ public class DiscordManager extends ListenerAdapter {
         if (roleManager != null) {
             roleManager.shutdown();
         }
+        quarantineEnforcer.shutdown();
+        actionQueue.shutdown();
+        commandExecutor.shutdown();
         if (jda != null) {
             jda.shutdown();
             logger.info("[Sentinel] Discord bot shut down.");
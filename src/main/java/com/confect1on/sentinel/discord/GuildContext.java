@@ -0,0 +1,140 @@
+package com.confect1on.sentinel.discord;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.events.guild.GuildJoinEvent;
+import net.dv8tion.jda.api.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.api.events.guild.GuildReadyEvent;
+import net.dv8tion.jda.api.events.role.RoleCreateEvent;
+import net.dv8tion.jda.api.events.role.RoleDeleteEvent;
+import net.dv8tion.jda.api.events.session.ReadyEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.slf4j.Logger;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * The guild Sentinel manages and its linked and quarantine roles, resolved once instead of
+ * searching every guild the bot is in on each check.
+ *
+ * The guild is discord.guildId when set. Otherwise it is the guild that has the linked or
+ * quarantine role, or the only guild if the bot is in just one. Resolution runs when JDA is
+ * ready and again whenever a guild or role appears or disappears, so readers only ever do
+ * a volatile read. Each getter returns null while the guild or role can't be found.
+ */
+public class GuildContext extends ListenerAdapter {
+    private static final Resolved NONE = new Resolved(null, null, null);
+
+    private final String guildId;
+    private final String linkedRoleId;
+    private final String quarantineRoleId;
+    private final Logger logger;
+
+    private volatile Resolved resolved = NONE;
+
+    public GuildContext(String guildId, String linkedRoleId, String quarantineRoleId, Logger logger) {
+        this.guildId = blankToNull(guildId);
+        this.linkedRoleId = blankToNull(linkedRoleId);
+        this.quarantineRoleId = blankToNull(quarantineRoleId);
+        this.logger = logger;
+    }
+
+    public Guild guild() {
+        return resolved.guild();
+    }
+
+    public Role linkedRole() {
+        return resolved.linkedRole();
+    }
+
+    public Role quarantineRole() {
+        return resolved.quarantineRole();
+    }
+
+    @Override
+    public void onReady(@Nonnull ReadyEvent event) {
+        resolve(event.getJDA());
+    }
+
+    @Override
+    public void onGuildReady(@Nonnull GuildReadyEvent event) {
+        resolve(event.getJDA());
+    }
+
+    @Override
+    public void onGuildJoin(@Nonnull GuildJoinEvent event) {
+        resolve(event.getJDA());
+    }
+
+    @Override
+    public void onGuildLeave(@Nonnull GuildLeaveEvent event) {
+        resolve(event.getJDA());
+    }
+
+    @Override
+    public void onRoleCreate(@Nonnull RoleCreateEvent event) {
+        resolve(event.getJDA());
+    }
+
+    @Override
+    public void onRoleDelete(@Nonnull RoleDeleteEvent event) {
+        resolve(event.getJDA());
+    }
+
+    private synchronized void resolve(JDA jda) {
+        Guild guild = findGuild(jda);
+        Resolved next = guild == null
+                ? NONE
+                : new Resolved(guild, roleIn(guild, linkedRoleId), roleIn(guild, quarantineRoleId));
+
+        Resolved previous = resolved;
+        resolved = next;
+        if (next.guild() != previous.guild() || next.linkedRole() != previous.linkedRole() || next.quarantineRole() != previous.quarantineRole()) {
+            logChange(next);
+        }
+    }
+
+    private Guild findGuild(JDA jda) {
+        if (guildId != null) {
+            return jda.getGuildById(guildId);
+        }
+        List<Guild> guilds = jda.getGuilds();
+        for (Guild guild : guilds) {
+            if (roleIn(guild, linkedRoleId) != null || roleIn(guild, quarantineRoleId) != null) {
+                return guild;
+            }
+        }
+        return guilds.size() == 1 ? guilds.get(0) : null;
+    }
+
+    private void logChange(Resolved next) {
+        if (next.guild() == null) {
+            if (guildId != null) {
+                logger.warn("🔗 Guild {} not found; is the bot a member?", guildId);
+            } else {
+                logger.warn("🔗 Could not tell which guild to manage; set discord.guildId");
+            }
+            return;
+        }
+        logger.info("🔗 Managing guild {} ({})", next.guild().getName(), next.guild().getId());
+        if (linkedRoleId != null && next.linkedRole() == null) {
+            logger.warn("🔗 Linked role {} not found in guild {}", linkedRoleId, next.guild().getName());
+        }
+        if (quarantineRoleId != null && next.quarantineRole() == null) {
+            logger.warn("🚫 Quarantine role {} not found in guild {}", quarantineRoleId, next.guild().getName());
+        }
+    }
+
+    private static Role roleIn(Guild guild, String roleId) {
+        return roleId == null ? null : guild.getRoleById(roleId);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    private record Resolved(Guild guild, Role linkedRole, Role quarantineRole) {
+    }
+}
@@ -0,0 +1,205 @@
+package com.confect1on.sentinel.discord;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.events.guild.GuildJoinEvent;
+import net.dv8tion.jda.api.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.api.events.guild.GuildReadyEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberJoinEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRemoveEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleAddEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleRemoveEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.slf4j.Logger;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local index of guild members and their role IDs.
+ * Each guild's member list is chunked once when it becomes ready, then kept current from
+ * gateway member events, so membership and role checks never need a REST call.
+ *
+ * Once GuildContext has resolved the managed guild, lookups only consult that guild, so the
+ * answers agree with QuarantineChecker's REST fallback; until then any guild counts.
+ */
+public class GuildMemberIndex extends ListenerAdapter {
+    private final GuildContext guildContext;
+    private final Logger logger;
+
+    // guild ID -> member ID -> role IDs
+    private final Map<Long, Map<Long, long[]>> guilds = new ConcurrentHashMap<>();
+    private final Set<Long> loadedGuilds = ConcurrentHashMap.newKeySet();
+    // guild ID -> members who left while that guild's member list was loading
+    private final Map<Long, Set<Long>> departedDuringLoad = new ConcurrentHashMap<>();
+
+    public GuildMemberIndex(GuildContext guildContext, Logger logger) {
+        this.guildContext = guildContext;
+        this.logger = logger;
+    }
+
+    @Override
+    public void onGuildReady(@Nonnull GuildReadyEvent event) {
+        load(event.getGuild());
+    }
+
+    @Override
+    public void onGuildJoin(@Nonnull GuildJoinEvent event) {
+        load(event.getGuild());
+    }
+
+    @Override
+    public void onGuildLeave(@Nonnull GuildLeaveEvent event) {
+        long guildId = event.getGuild().getIdLong();
+        loadedGuilds.remove(guildId);
+        departedDuringLoad.remove(guildId);
+        guilds.remove(guildId);
+    }
+
+    @Override
+    public void onGuildMemberJoin(@Nonnull GuildMemberJoinEvent event) {
+        put(event.getMember());
+    }
+
+    @Override
+    public void onGuildMemberRemove(@Nonnull GuildMemberRemoveEvent event) {
+        long guildId = event.getGuild().getIdLong();
+        long userId = event.getUser().getIdLong();
+        // remember the departure first, so a chunk still being applied can't bring them back
+        Set<Long> departed = departedDuringLoad.get(guildId);
+        if (departed != null) {
+            departed.add(userId);
+        }
+        Map<Long, long[]> members = guilds.get(guildId);
+        if (members != null) {
+            members.remove(userId);
+        }
+    }
+
+    @Override
+    public void onGuildMemberRoleAdd(@Nonnull GuildMemberRoleAddEvent event) {
+        put(event.getMember());
+    }
+
+    @Override
+    public void onGuildMemberRoleRemove(@Nonnull GuildMemberRoleRemoveEvent event) {
+        put(event.getMember());
+    }
+
+    /**
+     * Whether the member list has finished its initial load: the managed guild's once it is
+     * known, otherwise every guild the bot is in.
+     * Until then a missing member can't be told apart from one that hasn't been loaded yet.
+     */
+    public boolean isReady() {
+        Guild managed = guildContext.guild();
+        if (managed != null) {
+            return loadedGuilds.contains(managed.getIdLong());
+        }
+        return !guilds.isEmpty() && loadedGuilds.containsAll(guilds.keySet());
+    }
+
+    /**
+     * Whether the user is a member of the managed guild (any guild the bot is in until it is known).
+     */
+    public boolean isMember(long userId) {
+        Guild managed = guildContext.guild();
+        if (managed != null) {
+            Map<Long, long[]> members = guilds.get(managed.getIdLong());
+            return members != null && members.containsKey(userId);
+        }
+        for (Map<Long, long[]> members : guilds.values()) {
+            if (members.containsKey(userId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the user holds the role in the managed guild (any guild the bot is in until it is known).
+     */
+    public boolean hasRole(long userId, long roleId) {
+        Guild managed = guildContext.guild();
+        if (managed != null) {
+            Map<Long, long[]> members = guilds.get(managed.getIdLong());
+            return members != null && contains(members.get(userId), roleId);
+        }
+        for (Map<Long, long[]> members : guilds.values()) {
+            if (contains(members.get(userId), roleId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<Long, long[]> members : guilds.values()) {
+            size += members.size();
+        }
+        return size;
+    }
+
+    private void load(Guild guild) {
+        long guildId = guild.getIdLong();
+        Map<Long, long[]> members = new ConcurrentHashMap<>();
+        // register the map first so member events that arrive mid-load aren't lost
+        Set<Long> departed = ConcurrentHashMap.newKeySet();
+        loadedGuilds.remove(guildId);
+        departedDuringLoad.put(guildId, departed);
+        guilds.put(guildId, members);
+
+        guild.loadMembers()
+                .onSuccess(loaded -> {
+                    for (Member member : loaded) {
+                        // a join or role update seen during the load is newer than the chunk, so it wins;
+                        // so does a departure, which the chunk would otherwise bring back
+                        if (departed.contains(member.getIdLong())) continue;
+                        members.putIfAbsent(member.getIdLong(), roleIds(member));
+                    }
+                    departedDuringLoad.remove(guildId, departed);
+                    loadedGuilds.add(guildId);
+                    logger.info("👥 Indexed {} members of {}", members.size(), guild.getName());
+                })
+                .onError(error -> {
+                    departedDuringLoad.remove(guildId, departed);
+                    logger.error("👥 Failed to load members of {}", guild.getName(), error);
+                });
+    }
+
+    private void put(Member member) {
+        long guildId = member.getGuild().getIdLong();
+        // back (or never gone); the put below is newer than any chunk still loading
+        Set<Long> departed = departedDuringLoad.get(guildId);
+        if (departed != null) {
+            departed.remove(member.getIdLong());
+        }
+        guilds.computeIfAbsent(guildId, id -> new ConcurrentHashMap<>())
+                .put(member.getIdLong(), roleIds(member));
+    }
+
+    private static boolean contains(long[] roles, long roleId) {
+        if (roles != null) {
+            for (long role : roles) {
+                if (role == roleId) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static long[] roleIds(Member member) {
+        List<Role> roles = member.getRoles();
+        long[] ids = new long[roles.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = roles.get(i).getIdLong();
+        }
+        return ids;
+    }
+}
@@ -1,6 +1,8 @@
 package com.confect1on.sentinel.discord;
 
 import com.confect1on.sentinel.db.DatabaseManager;
+import com.confect1on.sentinel.db.PendingLink;
+import com.confect1on.sentinel.metrics.MetricsRegistry;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.interactions.InteractionHook;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
@@ -14,7 +16,9 @@ import java.util.UUID;
 public class LinkCommandListener extends ListenerAdapter {
     private final DatabaseManager db;
     private final Logger logger;
-    private RoleManager roleManager;
+    private final CommandMetrics commandMetrics;
+    private final CommandExecutor commandExecutor;
+    private volatile RoleManager roleManager;
 
     private final SlashCommandData commandData = Commands
             .slash("link", "Link your Minecraft account")
@@ -23,9 +27,11 @@ public class LinkCommandListener extends ListenerAdapter {
                     "code", "Your link code", true
             );
 
-    public LinkCommandListener(DatabaseManager db, Logger logger) {
+    LinkCommandListener(DatabaseManager db, CommandExecutor commandExecutor, MetricsRegistry metrics, Logger logger) {
         this.db = db;
+        this.commandExecutor = commandExecutor;
         this.logger = logger;
+        this.commandMetrics = new CommandMetrics(metrics, "link");
     }
 
     public SlashCommandData getCommandData() {
@@ -43,39 +49,39 @@ public class LinkCommandListener extends ListenerAdapter {
     public void onSlashCommandInteraction(@Nonnull SlashCommandInteractionEvent evt) {
         if (!"link".equals(evt.getName())) return;
 
+        long start = System.nanoTime();
         var codeOption = evt.getOption("code");
         if (codeOption == null) {
             evt.reply("❌ Code parameter is required.").setEphemeral(true).queue();
+            commandMetrics.handledSince(start);
             return;
         }
         String code = codeOption.getAsString();
+        String discordId = evt.getUser().getId();
 
-        // block til defer is sent to make sure we make it within 3s
-        InteractionHook hook;
-        try {
-            hook = evt.deferReply(true).complete();
-        } catch (Exception ex) {
-            logger.error("❌ Failed to defer /link interaction", ex);
-            return;
-        }
+        // acknowledge right away, then do the db work on the command executor
+        commandExecutor.deferThen(evt, true, commandMetrics, start, hook -> link(hook, code, discordId));
+    }
 
-        // nowwww do the db work
-        UUID uuid = db.claimPending(code);
-        if (uuid == null) {
+    private void link(InteractionHook hook, String code, String discordId) {
+        PendingLink pending = db.claimPending(code);
+        if (pending == null) {
             hook.sendMessage("❌ Invalid or expired code.").queue();
             return;
         }
-        if (!db.addLink(uuid, evt.getUser().getId())) {
+        UUID uuid = pending.uuid();
+        if (!db.addLink(uuid, discordId, pending.username())) {
             hook.sendMessage("❌ This Discord account is already linked!").queue();
             return;
         }
 
         // Assign role to newly linked player
+        RoleManager roleManager = this.roleManager;
         if (roleManager != null) {
-            roleManager.addRoleToLinkedPlayer(evt.getUser().getId());
+            roleManager.addRoleToLinkedPlayer(discordId);
         }
 
         hook.sendMessage("✅ Your account has been linked!").queue();
-        logger.info("[Sentinel] Linked Minecraft {} ↔ Discord {}", uuid, evt.getUser().getId());
+        logger.info("[Sentinel] Linked Minecraft {} ↔ Discord {}", uuid, discordId);
     }
 }
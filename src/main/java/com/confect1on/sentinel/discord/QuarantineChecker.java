@@ -5,28 +5,39 @@ import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.requests.ErrorResponse;
 import org.slf4j.Logger;
 
+import java.util.List;
+
 /**
  * Handles quarantine role checking and automatic cleanup of users who left Discord.
  */
 public class QuarantineChecker {
     private final DatabaseManager database;
     private final JDA jda;
+    private final GuildMemberIndex memberIndex;
+    private final GuildContext guildContext;
     private final String quarantineRoleId;
     private final Logger logger;
     
-    public QuarantineChecker(DatabaseManager database, JDA jda, String quarantineRoleId, Logger logger) {
+    public QuarantineChecker(DatabaseManager database, JDA jda, GuildMemberIndex memberIndex, GuildContext guildContext, String quarantineRoleId, Logger logger) {
         this.database = database;
         this.jda = jda;
+        this.memberIndex = memberIndex;
+        this.guildContext = guildContext;
         this.quarantineRoleId = quarantineRoleId;
         this.logger = logger;
     }
     
     /**
      * Checks if a Discord user has the quarantine role.
-     * If the user has left Discord, removes them from the database.
+     * Answered from the member index once it has loaded; before that, falls back to REST
+     * and removes users who have left Discord from the database.
      * 
+     * Unexpected errors propagate so the caller can apply its own failure policy.
+     *
      * @param discordId The Discord ID to check
      * @return true if the user has the quarantine role, false if they don't or left Discord
      */
@@ -34,56 +45,47 @@ public class QuarantineChecker {
         if (quarantineRoleId == null || quarantineRoleId.isBlank()) {
             return false; // Quarantine disabled
         }
+
+        if (memberIndex.isReady()) {
+            return memberIndex.hasRole(Long.parseLong(discordId), Long.parseLong(quarantineRoleId));
+        }
         
+        Role quarantineRole = guildContext.quarantineRole();
+        if (quarantineRole == null) {
+            logger.warn("🚫 Quarantine role with ID {} not found", quarantineRoleId);
+            return false;
+        }
+        Guild targetGuild = quarantineRole.getGuild();
+
+        // Try to find the member in the guild
         try {
-            // Find the quarantine role across all guilds
-            Role quarantineRole = null;
-            Guild targetGuild = null;
-            
-            for (Guild guild : jda.getGuilds()) {
-                Role role = guild.getRoleById(quarantineRoleId);
-                if (role != null) {
-                    quarantineRole = role;
-                    targetGuild = guild;
-                    break;
-                }
-            }
-            
-            if (quarantineRole == null || targetGuild == null) {
-                logger.warn("🚫 Quarantine role with ID {} not found in any guild", quarantineRoleId);
-                return false;
+            Member member = targetGuild.retrieveMemberById(discordId).complete();
+
+            // Check if they have the quarantine role
+            boolean hasQuarantineRole = member.getRoles().contains(quarantineRole);
+            if (hasQuarantineRole) {
+                logger.debug("🚫 User {} is quarantined in guild {}", member.getEffectiveName(), targetGuild.getName());
             }
-            
-            // Try to find the member in the guild
-            try {
-                Member member = targetGuild.retrieveMemberById(discordId).complete();
-                
-                // Check if they have the quarantine role
-                boolean hasQuarantineRole = member.getRoles().contains(quarantineRole);
-                if (hasQuarantineRole) {
-                    logger.debug("🚫 User {} is quarantined in guild {}", member.getEffectiveName(), targetGuild.getName());
-                }
-                return hasQuarantineRole;
-                
-            } catch (Exception e) {
-                // Member not found - they left Discord, remove from database
-                boolean removed = database.removeLinkByDiscordId(discordId);
-                if (removed) {
-                    logger.info("🔗 Removed user {} from database - no longer in Discord server", discordId);
-                }
-                return false; // Not quarantined because they're not even in Discord
+            return hasQuarantineRole;
+
+        } catch (ErrorResponseException e) {
+            if (!isUnknownMember(e)) throw e;
+            // Member not found - they left Discord, remove from database
+            boolean removed = database.removeLinkByDiscordId(discordId);
+            if (removed) {
+                logger.info("🔗 Removed user {} from database - no longer in Discord server", discordId);
             }
-            
-        } catch (Exception e) {
-            logger.error("🚫 Error checking quarantine status for Discord ID {}", discordId, e);
-            return false; // Default to not quarantined on error
+            return false; // Not quarantined because they're not even in Discord
         }
     }
     
     /**
      * Checks if a Discord user is still in the server (any guild the bot is in).
+     * Answered from the member index once it has loaded, falling back to REST before that.
      * If the user has left Discord, removes them from the database.
      * 
+     * Unexpected errors propagate so the caller can apply its own failure policy.
+     *
      * @param discordId The Discord ID to check
      * @return true if the user is still in Discord, false if they left
      */
@@ -91,28 +93,40 @@ public class QuarantineChecker {
         if (discordId == null) {
             return false;
         }
-        
-        try {
-            // Check all guilds the bot is in
-            for (Guild guild : jda.getGuilds()) {
-                try {
-                    guild.retrieveMemberById(discordId).complete();
-                    return true; // Found the user in this guild
-                } catch (Exception e) {
-                    // User not found in this guild, continue to next guild
-                }
+
+        if (memberIndex.isReady()) {
+            if (memberIndex.isMember(Long.parseLong(discordId))) {
+                return true;
             }
-            
-            // User not found in any guild - remove from database
-            boolean removed = database.removeLinkByDiscordId(discordId);
-            if (removed) {
-                logger.info("🔗 Removed user {} from database - no longer in Discord server", discordId);
+        } else if (isMemberOfAnyGuild(discordId)) {
+            return true;
+        }
+
+        // User not found in any guild - remove from database
+        boolean removed = database.removeLinkByDiscordId(discordId);
+        if (removed) {
+            logger.info("🔗 Removed user {} from database - no longer in Discord server", discordId);
+        }
+        return false;
+    }
+
+    private boolean isMemberOfAnyGuild(String discordId) {
+        // Only the managed guild counts once it is known; before that, any guild the bot is in
+        Guild managed = guildContext.guild();
+        for (Guild guild : managed != null ? List.of(managed) : jda.getGuilds()) {
+            try {
+                guild.retrieveMemberById(discordId).complete();
+                return true; // Found the user in this guild
+            } catch (ErrorResponseException e) {
+                if (!isUnknownMember(e)) throw e;
+                // User not found in this guild, continue to next guild
             }
-            return false;
-            
-        } catch (Exception e) {
-            logger.error("🔗 Error checking if Discord user {} is still in server", discordId, e);
-            return true; // Default to assuming they're still there on error
         }
+        return false;
+    }
+
+    private static boolean isUnknownMember(ErrorResponseException e) {
+        return e.getErrorResponse() == ErrorResponse.UNKNOWN_MEMBER
+                || e.getErrorResponse() == ErrorResponse.UNKNOWN_USER;
     }
-} 
\ No newline at end of file
+}
@@ -2,48 +2,70 @@ package com.confect1on.sentinel.discord;
 
 import com.confect1on.sentinel.db.DatabaseManager;
 import com.confect1on.sentinel.db.LinkInfo;
-import com.confect1on.sentinel.config.SentinelConfig;
+import com.confect1on.sentinel.metrics.MetricsRegistry;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.InteractionHook;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
 import net.dv8tion.jda.api.interactions.commands.build.SlashCommandData;
-import com.velocitypowered.api.proxy.ProxyServer;
-import com.velocitypowered.api.proxy.Player;
-import net.kyori.adventure.text.Component;
 import org.slf4j.Logger;
 
 import javax.annotation.Nonnull;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public class QuarantineCommandListener extends ListenerAdapter {
     private final DatabaseManager db;
     private final Logger logger;
     private final String quarantineRoleId;
-    private final String[] staffRoles;
-    private final ProxyServer proxyServer;
-    private final SentinelConfig config;
+    private final StaffPermissions permissions;
+    private final QuarantineEnforcer quarantineEnforcer;
+    private final GuildContext guildContext;
+    private final DiscordActionQueue actionQueue;
+    private final CommandExecutor commandExecutor;
+    private final CommandMetrics commandMetrics;
 
     private final SlashCommandData commandData = Commands
             .slash("quarantine", "Toggle quarantine role for a user")
-            .addOption(OptionType.STRING, "user", "Minecraft username or Discord @mention", true);
+            .addOption(OptionType.STRING, "user", "Minecraft username or Discord @mention", true, true);
 
-    public QuarantineCommandListener(DatabaseManager db, String quarantineRoleId, String[] staffRoles, ProxyServer proxyServer, SentinelConfig config, Logger logger) {
+    QuarantineCommandListener(DatabaseManager db, String quarantineRoleId, StaffPermissions permissions, QuarantineEnforcer quarantineEnforcer,
+                              GuildContext guildContext, DiscordActionQueue actionQueue, CommandExecutor commandExecutor, MetricsRegistry metrics, Logger logger) {
         this.db = db;
         this.quarantineRoleId = quarantineRoleId;
-        this.staffRoles = staffRoles;
-        this.proxyServer = proxyServer;
-        this.config = config;
+        this.permissions = permissions;
+        this.quarantineEnforcer = quarantineEnforcer;
+        this.guildContext = guildContext;
+        this.actionQueue = actionQueue;
+        this.commandExecutor = commandExecutor;
         this.logger = logger;
+        this.commandMetrics = new CommandMetrics(metrics, "quarantine");
     }
 
     public SlashCommandData getCommandData() {
         return commandData;
     }
 
+    @Override
+    public void onCommandAutoCompleteInteraction(@Nonnull CommandAutoCompleteInteractionEvent event) {
+        if (!"quarantine".equals(event.getName())) return;
+
+        // only staff get suggestions, and mentions are left to Discord
+        String input = event.getFocusedOption().getValue();
+        if (input.startsWith("<@") || !permissions.canUse("quarantine", event.getMember())) {
+            event.replyChoiceStrings(List.of()).queue();
+            return;
+        }
+        event.replyChoiceStrings(db.suggestUsernames(input, OptionData.MAX_CHOICES)).queue();
+    }
+
     @Override
     public void onSlashCommandInteraction(@Nonnull SlashCommandInteractionEvent event) {
         if (!"quarantine".equals(event.getName())) return;
@@ -55,7 +77,7 @@ public class QuarantineCommandListener extends ListenerAdapter {
         }
 
         // Check if user has permission to use this command
-        if (!hasStaffPermission(event)) {
+        if (!permissions.canUse("quarantine", event.getMember())) {
             event.reply("❌ You don't have permission to use this command.").setEphemeral(true).queue();
             return;
         }
@@ -68,155 +90,87 @@ public class QuarantineCommandListener extends ListenerAdapter {
         }
 
         String userInput = userOption.getAsString();
+        long start = System.nanoTime();
 
         // Defer reply since we'll be doing database and Discord API calls
-        event.deferReply().queue(hook -> {
-            try {
-                // Find the quarantine role
-                Role quarantineRole = null;
-                Guild targetGuild = null;
-
-                for (Guild guild : event.getJDA().getGuilds()) {
-                    Role role = guild.getRoleById(quarantineRoleId);
-                    if (role != null) {
-                        quarantineRole = role;
-                        targetGuild = guild;
-                        break;
-                    }
-                }
-
-                if (quarantineRole == null || targetGuild == null) {
-                    hook.sendMessage("❌ Quarantine role not found in any guild.").queue();
-                    return;
-                }
-
-                // Parse user input - could be Discord mention or Minecraft username
-                String discordId = null;
-                String minecraftUsername = null;
-
-                if (userInput.startsWith("<@") && userInput.endsWith(">")) {
-                    // Discord mention
-                    discordId = userInput.replaceAll("[<@!>]", "");
-                } else {
-                    // Assume Minecraft username
-                    minecraftUsername = userInput;
-                    
-                    // Look up Discord ID from database
-                    Optional<LinkInfo> linkInfo = db.findByUsername(minecraftUsername);
-                    if (linkInfo.isPresent()) {
-                        discordId = linkInfo.get().discordId();
-                    } else {
-                        hook.sendMessage("❌ No linked account found for Minecraft username: " + minecraftUsername).queue();
-                        return;
-                    }
-                }
-
-                // Make discordId final for use in lambdas
-                final String finalDiscordId = discordId;
+        // handling ends when the role change does, not when quarantine() returns
+        commandExecutor.deferThenAsync(event, false, commandMetrics, start, hook -> quarantine(hook, event.getUser().getAsTag(), userInput));
+    }
 
-                // Find the member in Discord
-                Member targetMember;
-                try {
-                    targetMember = targetGuild.retrieveMemberById(finalDiscordId).complete();
-                } catch (Exception e) {
-                    hook.sendMessage("❌ User not found in Discord server.").queue();
-                    return;
-                }
+    /**
+     * Toggles the role; the returned stage completes once the outcome has been reported.
+     */
+    private CompletableFuture<Void> quarantine(InteractionHook hook, String staffTag, String userInput) {
+        Role quarantineRole = guildContext.quarantineRole();
+        Guild targetGuild = quarantineRole != null ? quarantineRole.getGuild() : null;
 
-                // Toggle the quarantine role
-                boolean hasQuarantineRole = targetMember.getRoles().contains(quarantineRole);
-                
-                if (hasQuarantineRole) {
-                    // Remove quarantine role
-                    targetGuild.removeRoleFromMember(targetMember, quarantineRole).queue(
-                        success -> {
-                            hook.sendMessage("✅ Removed quarantine role from " + targetMember.getEffectiveName()).queue();
-                            logger.info("✅ {} removed quarantine role from {}", event.getUser().getAsTag(), targetMember.getEffectiveName());
-                        },
-                        error -> {
-                            hook.sendMessage("❌ Failed to remove quarantine role: " + error.getMessage()).queue();
-                            logger.error("🚫 Failed to remove quarantine role from {}", targetMember.getEffectiveName(), error);
-                        }
-                    );
-                } else {
-                    // Add quarantine role
-                    targetGuild.addRoleToMember(targetMember, quarantineRole).queue(
-                        success -> {
-                            hook.sendMessage("🚫 Added quarantine role to " + targetMember.getEffectiveName()).queue();
-                            logger.info("🚫 {} added quarantine role to {}", event.getUser().getAsTag(), targetMember.getEffectiveName());
-                            
-                            // Kick the player if they're currently online
-                            kickPlayerIfOnline(finalDiscordId, targetMember.getEffectiveName());
-                        },
-                        error -> {
-                            hook.sendMessage("❌ Failed to add quarantine role: " + error.getMessage()).queue();
-                            logger.error("🚫 Failed to add quarantine role to {}", targetMember.getEffectiveName(), error);
-                        }
-                    );
-                }
+        if (quarantineRole == null || targetGuild == null) {
+            hook.sendMessage("❌ Quarantine role not found in the server.").queue();
+            return CompletableFuture.completedFuture(null);
+        }
 
-            } catch (Exception e) {
-                hook.sendMessage("❌ An error occurred while processing the command.").queue();
-                logger.error("🚫 Error in quarantine command", e);
+        // Parse user input - could be Discord mention or Minecraft username
+        String discordId;
+        if (userInput.startsWith("<@") && userInput.endsWith(">")) {
+            // Discord mention
+            discordId = userInput.replaceAll("[<@!>]", "");
+        } else {
+            // Assume Minecraft username; look up Discord ID from database
+            Optional<LinkInfo> linkInfo = db.findByUsername(userInput);
+            if (linkInfo.isEmpty()) {
+                hook.sendMessage("❌ No linked account found for Minecraft username: " + userInput).queue();
+                return CompletableFuture.completedFuture(null);
             }
-        });
-    }
-
-    private boolean hasStaffPermission(SlashCommandInteractionEvent event) {
-        // If no staff roles are configured, fail shut
-        if (staffRoles == null || staffRoles.length == 0) {
-            return false;
+            discordId = linkInfo.get().discordId();
         }
-        
-        // Get guild and member with null checks
-        Guild guild = event.getGuild();
-        if (guild == null) {
-            return false;
-        }
-        
-        Member member = event.getMember();
-        if (member == null) {
-            return false;
-        }
-        
-        // Check if the member has any of the staff roles
-        for (String staffRoleId : staffRoles) {
-            if (staffRoleId != null && !staffRoleId.isBlank()) {
-                Role staffRole = guild.getRoleById(staffRoleId);
-                if (staffRole != null && member.getRoles().contains(staffRole)) {
-                    return true;
+
+        // Find the member in Discord without blocking; the toggle continues in the callback
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        targetGuild.retrieveMemberById(discordId).queue(
+                targetMember -> {
+                    try {
+                        toggle(hook, staffTag, quarantineRole, targetMember, discordId)
+                                .whenComplete((ignored, error) -> {
+                                    if (error != null) {
+                                        done.completeExceptionally(error);
+                                    } else {
+                                        done.complete(null);
+                                    }
+                                });
+                    } catch (RuntimeException e) {
+                        done.completeExceptionally(e);
+                    }
+                },
+                error -> {
+                    hook.sendMessage("❌ User not found in Discord server.").queue();
+                    done.complete(null);
                 }
-            }
-        }
-        
-        return false;
+        );
+        return done;
     }
 
-    /**
-     * Kicks a player from the proxy if they are currently online.
-     * This is called when a quarantine role is added to ensure immediate enforcement.
-     */
-    private void kickPlayerIfOnline(String discordId, String discordUsername) {
-        try {
-            // Get the UUID from the Discord ID
-            Optional<LinkInfo> linkInfo = db.findByDiscordId(discordId);
-            if (linkInfo.isEmpty()) {
-                logger.debug("🚫 No linked account found for Discord ID {} when trying to kick", discordId);
-                return;
-            }
-            
-            // Check if the player is currently online
-            Optional<Player> onlinePlayer = proxyServer.getPlayer(linkInfo.get().uuid());
-            if (onlinePlayer.isPresent()) {
-                Player player = onlinePlayer.get();
-                // Use the configured quarantine message
-                player.disconnect(Component.text(config.discord.quarantineMessage));
-                logger.info("🚫 Kicked player {} ({}) from proxy due to quarantine", player.getUsername(), linkInfo.get().uuid());
-            } else {
-                logger.debug("🚫 Player {} ({}) is not currently online, no kick needed", discordUsername, linkInfo.get().uuid());
-            }
-        } catch (Exception e) {
-            logger.error("🚫 Error while trying to kick quarantined player with Discord ID {}", discordId, e);
-        }
+    private CompletableFuture<Void> toggle(InteractionHook hook, String staffTag, Role quarantineRole, Member targetMember, String discordId) {
+        boolean add = !targetMember.getRoles().contains(quarantineRole);
+        String name = targetMember.getEffectiveName();
+        return actionQueue.changeRole(quarantineRole, targetMember.getIdLong(), add, DiscordActionQueue.Priority.INTERACTIVE)
+                .handle((changed, error) -> {
+                    if (error != null) {
+                        hook.sendMessage("❌ Failed to " + (add ? "add" : "remove") + " quarantine role: " + error.getMessage()).queue();
+                        logger.error("🚫 Failed to {} quarantine role {} {}", add ? "add" : "remove", add ? "to" : "from", name, error);
+                    } else if (!changed) {
+                        // a later toggle the other way replaced this one before it was sent
+                        hook.sendMessage("↩️ Quarantine change for " + name + " was replaced by a later one before it was sent").queue();
+                    } else if (add) {
+                        hook.sendMessage("🚫 Added quarantine role to " + name).queue();
+                        logger.info("🚫 {} added quarantine role to {}", staffTag, name);
+
+                        // Kick the player if they're currently online; that's a db lookup, so not on JDA's thread
+                        commandExecutor.execute(() -> quarantineEnforcer.kickIfOnline(discordId));
+                    } else {
+                        hook.sendMessage("✅ Removed quarantine role from " + name).queue();
+                        logger.info("✅ {} removed quarantine role from {}", staffTag, name);
+                    }
+                    return null;
+                });
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,255 @@
+package com.confect1on.sentinel.discord;
+
+import com.confect1on.sentinel.config.SentinelConfig;
+import com.confect1on.sentinel.db.DatabaseManager;
+import com.confect1on.sentinel.db.LinkInfo;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRemoveEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleAddEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleRemoveEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.kyori.adventure.text.Component;
+import org.slf4j.Logger;
+
+import javax.annotation.Nonnull;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Disconnects online players as soon as Discord says they shouldn't be on the proxy:
+ * when they are given the quarantine role (by /quarantine or directly in the Discord client)
+ * or when they leave the server.
+ *
+ * Events are collected for a short debounce window and handled in one batch, so a raid
+ * cleanup that quarantines hundreds of members at once costs one pass instead of hundreds.
+ * Only departures from the managed guild count, and they are held back until the member
+ * index can confirm them, since acting on one unlinks the account.
+ */
+public class QuarantineEnforcer extends ListenerAdapter {
+    private static final long DEBOUNCE_MILLIS = 500;
+    // how long to hold departures while the managed guild or its member index isn't ready
+    private static final long CONFIRM_RETRY_MILLIS = 5000;
+
+    private final DatabaseManager db;
+    private final GuildContext guildContext;
+    private final GuildMemberIndex memberIndex;
+    private final ProxyServer proxyServer;
+    private final String quarantineRoleId;
+    private volatile String quarantineMessage;
+    private final Logger logger;
+
+    private final Set<String> pendingQuarantines = ConcurrentHashMap.newKeySet();
+    // Discord ID -> the guild they left
+    private final Map<String, Long> pendingDepartures = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final ScheduledExecutorService executor;
+
+    public QuarantineEnforcer(DatabaseManager db, GuildContext guildContext, GuildMemberIndex memberIndex, ProxyServer proxyServer,
+                              SentinelConfig config, Logger logger) {
+        this.db = db;
+        this.guildContext = guildContext;
+        this.memberIndex = memberIndex;
+        this.proxyServer = proxyServer;
+        this.quarantineRoleId = config.discord.quarantineRole;
+        this.quarantineMessage = config.discord.quarantineMessage;
+        this.logger = logger;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Sentinel-QuarantineEnforcer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public void onGuildMemberRoleAdd(@Nonnull GuildMemberRoleAddEvent event) {
+        if (containsQuarantineRole(event.getRoles())) {
+            pendingQuarantines.add(event.getMember().getId());
+            scheduleFlush(DEBOUNCE_MILLIS);
+        }
+    }
+
+    @Override
+    public void onGuildMemberRoleRemove(@Nonnull GuildMemberRoleRemoveEvent event) {
+        // lifted again before we got to it
+        if (containsQuarantineRole(event.getRoles())) {
+            pendingQuarantines.remove(event.getMember().getId());
+        }
+    }
+
+    @Override
+    public void onGuildMemberRemove(@Nonnull GuildMemberRemoveEvent event) {
+        // leaving another guild the bot shares must never unlink anyone
+        Guild managed = guildContext.guild();
+        if (managed != null && managed.getIdLong() != event.getGuild().getIdLong()) {
+            return;
+        }
+        pendingDepartures.put(event.getUser().getId(), event.getGuild().getIdLong());
+        scheduleFlush(DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Kicks a player from the proxy if they are currently online.
+     * This is called when a quarantine role is added to ensure immediate enforcement.
+     */
+    public void kickIfOnline(String discordId) {
+        try {
+            // Get the UUID from the Discord ID
+            Optional<LinkInfo> linkInfo = db.findByDiscordId(discordId);
+            if (linkInfo.isEmpty()) {
+                logger.debug("🚫 No linked account found for Discord ID {} when trying to kick", discordId);
+                return;
+            }
+
+            // Check if the player is currently online
+            Optional<Player> onlinePlayer = proxyServer.getPlayer(linkInfo.get().uuid());
+            if (onlinePlayer.isPresent()) {
+                Player player = onlinePlayer.get();
+                // Use the configured quarantine message
+                player.disconnect(Component.text(quarantineMessage));
+                logger.info("🚫 Kicked player {} ({}) from proxy due to quarantine", player.getUsername(), linkInfo.get().uuid());
+            } else {
+                logger.debug("🚫 Player {} is not currently online, no kick needed", linkInfo.get().uuid());
+            }
+        } catch (Exception e) {
+            logger.error("🚫 Error while trying to kick quarantined player with Discord ID {}", discordId, e);
+        }
+    }
+
+    /**
+     * Picks up a reloaded quarantine message.
+     */
+    public void applyConfig(SentinelConfig config) {
+        quarantineMessage = config.discord.quarantineMessage;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private boolean containsQuarantineRole(List<Role> roles) {
+        if (quarantineRoleId == null || quarantineRoleId.isBlank()) {
+            return false;
+        }
+        for (Role role : roles) {
+            if (role.getId().equals(quarantineRoleId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scheduleFlush(long delayMillis) {
+        if (flushScheduled.compareAndSet(false, true)) {
+            executor.schedule(this::flush, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        try {
+            Set<String> quarantined = drain(pendingQuarantines);
+            Set<String> departed = confirmedDepartures();
+
+            // the index is current by now; drop anyone whose situation changed in the meantime
+            if (memberIndex.isReady()) {
+                quarantined.removeIf(id -> !memberIndex.hasRole(Long.parseLong(id), Long.parseLong(quarantineRoleId)));
+            }
+
+            if (!quarantined.isEmpty()) {
+                disconnect(quarantined, quarantineMessage, "quarantine");
+            }
+            if (!departed.isEmpty()) {
+                disconnect(departed, "You left the Discord server, so your account is no longer linked.", "leaving Discord");
+                for (String discordId : departed) {
+                    if (db.removeLinkByDiscordId(discordId)) {
+                        logger.info("🔗 Removed user {} from database - no longer in Discord server", discordId);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("🚫 Error while enforcing Discord changes on online players", e);
+        }
+    }
+
+    /**
+     * Disconnects every online player linked to one of the Discord IDs.
+     * Small batches are resolved ID by ID; large ones walk the online players once instead.
+     */
+    private void disconnect(Set<String> discordIds, String message, String reason) {
+        Component kickMessage = Component.text(message);
+        int kicked = 0;
+
+        if (discordIds.size() <= proxyServer.getPlayerCount()) {
+            for (String discordId : discordIds) {
+                Optional<LinkInfo> link = db.findByDiscordId(discordId);
+                if (link.isEmpty()) continue;
+                Optional<Player> player = proxyServer.getPlayer(link.get().uuid());
+                if (player.isPresent()) {
+                    player.get().disconnect(kickMessage);
+                    kicked++;
+                }
+            }
+        } else {
+            for (Player player : proxyServer.getAllPlayers()) {
+                Optional<LinkInfo> link = db.findByUuid(player.getUniqueId());
+                if (link.isPresent() && discordIds.contains(link.get().discordId())) {
+                    player.disconnect(kickMessage);
+                    kicked++;
+                }
+            }
+        }
+
+        if (kicked > 0) {
+            logger.info("🚫 Kicked {} online player(s) due to {} ({} Discord change(s) processed)", kicked, reason, discordIds.size());
+        }
+    }
+
+    /**
+     * Takes the departures from the managed guild whose members are really gone. Until the
+     * guild is resolved and its member index loaded nothing can be confirmed, so they are
+     * put back and checked again later.
+     */
+    private Set<String> confirmedDepartures() {
+        Guild managed = guildContext.guild();
+        if (managed == null || !memberIndex.isReady()) {
+            if (!pendingDepartures.isEmpty()) {
+                logger.debug("🔗 Holding {} Discord departure(s) until the server's member list is loaded", pendingDepartures.size());
+                scheduleFlush(CONFIRM_RETRY_MILLIS);
+            }
+            return new HashSet<>();
+        }
+
+        Set<String> departed = new HashSet<>();
+        Iterator<Map.Entry<String, Long>> it = pendingDepartures.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            it.remove();
+            if (entry.getValue() == managed.getIdLong() && !memberIndex.isMember(Long.parseLong(entry.getKey()))) {
+                departed.add(entry.getKey());
+            }
+        }
+        return departed;
+    }
+
+    private static Set<String> drain(Set<String> pending) {
+        Set<String> drained = new HashSet<>();
+        Iterator<String> it = pending.iterator();
+        while (it.hasNext()) {
+            drained.add(it.next());
+            it.remove();
+        }
+        return drained;
+    }
+}
@@ -1,49 +1,82 @@
 package com.confect1on.sentinel.discord;
 
+import com.confect1on.sentinel.config.SentinelConfig;
 import com.confect1on.sentinel.db.DatabaseManager;
-import net.dv8tion.jda.api.JDA;
+import com.confect1on.sentinel.db.LinkInfo;
+import com.confect1on.sentinel.metrics.LatencyHistogram;
+import com.confect1on.sentinel.metrics.MetricsRegistry;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Role;
 import org.slf4j.Logger;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Manages Discord roles for linked players.
- * Ensures all linked accounts have the configured role and handles rate limiting.
+ *
+ * Synchronization is diff-based: the guild's members are loaded once, compared against
+ * linked_accounts, and only the members whose role is actually wrong get a role change.
+ * Because each run recomputes the diff from current state, a sync interrupted by a restart
+ * simply resumes with whatever is still missing on the next run.
+ *
+ * Role changes go through the shared DiscordActionQueue: sync work as background actions,
+ * new links as interactive ones that are sent first.
  */
 public class RoleManager {
     private final DatabaseManager database;
-    private final JDA jda;
+    private final GuildContext guildContext;
+    private final DiscordActionQueue actionQueue;
     private final String roleId;
+    private final SentinelConfig.RoleSync syncConfig;
     private final Logger logger;
-    
+
     private final ScheduledExecutorService executor;
     private final AtomicBoolean isRunning = new AtomicBoolean(false);
-    
-    // Rate limiting: process one role assignment every 2 seconds
-    // This means ~1800 roles can be processed in 20 minutes (3600 seconds / 2 = 1800)
-    private static final long RATE_LIMIT_DELAY_SECONDS = 2;
-    
-    public RoleManager(DatabaseManager database, JDA jda, String roleId, Logger logger) {
+
+    // progress of the current sync run
+    private final AtomicInteger syncTotal = new AtomicInteger();
+    private final AtomicInteger syncApplied = new AtomicInteger();
+    private final AtomicInteger syncFailed = new AtomicInteger();
+
+    private final LatencyHistogram syncTimer;
+    private final LatencyHistogram runTimer;
+    private volatile long runStart;
+
+    public RoleManager(DatabaseManager database, GuildContext guildContext, DiscordActionQueue actionQueue, String roleId, SentinelConfig.RoleSync syncConfig, MetricsRegistry metrics, Logger logger) {
         this.database = database;
-        this.jda = jda;
+        this.guildContext = guildContext;
+        this.actionQueue = actionQueue;
         this.roleId = roleId;
+        this.syncConfig = syncConfig;
         this.logger = logger;
+        this.syncTimer = metrics.timer("sentinel_role_sync_diff_seconds", "Time to load members and compute the role changes a sync needs");
+        this.runTimer = metrics.timer("sentinel_role_sync_seconds", "Time for a whole role sync run, until its last role change is applied");
+        // progress of the current (or last) run
+        String progressHelp = "Role changes in the current or last role sync run";
+        metrics.gauge("sentinel_role_sync_changes", progressHelp, "state", "total", syncTotal::get);
+        metrics.gauge("sentinel_role_sync_changes", progressHelp, "state", "applied", syncApplied::get);
+        metrics.gauge("sentinel_role_sync_changes", progressHelp, "state", "failed", syncFailed::get);
+        metrics.gauge("sentinel_role_sync_running", "Whether a role sync run is in progress", null, null, () -> isRunning.get() ? 1 : 0);
         this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
             Thread t = new Thread(r, "Sentinel-RoleManager");
             t.setDaemon(true);
             return t;
         });
     }
-    
+
     /**
-     * Starts the role synchronization process.
+     * Starts the role synchronization process, repeating it on the configured interval.
      * This will ensure all linked accounts have the configured role.
      */
     public void startRoleSynchronization() {
@@ -51,127 +84,174 @@ public class RoleManager {
             logger.info("🔗 Role synchronization disabled - no role ID configured");
             return;
         }
-        
-        if (isRunning.compareAndSet(false, true)) {
-            logger.info("🔗 Starting role synchronization for linked players...");
-            executor.execute(this::synchronizeRoles);
+
+        if (syncConfig.intervalMinutes > 0) {
+            executor.scheduleWithFixedDelay(this::startSyncRun, 0, syncConfig.intervalMinutes, TimeUnit.MINUTES);
+        } else {
+            executor.execute(this::startSyncRun);
         }
     }
-    
+
     /**
-     * Adds a role to a newly linked player immediately (with rate limiting).
+     * Adds a role to a newly linked player immediately, ahead of any background sync work.
      */
     public void addRoleToLinkedPlayer(String discordId) {
         if (roleId == null || roleId.isBlank()) {
             return;
         }
-        
-        executor.schedule(() -> processRoleAssignment(discordId), 0, TimeUnit.SECONDS);
+
+        Role role = findRole();
+        if (role == null) {
+            return;
+        }
+        long userId = Long.parseLong(discordId);
+        actionQueue.changeRole(role, userId, true, DiscordActionQueue.Priority.INTERACTIVE)
+                .whenComplete((changed, error) -> {
+                    if (error != null) {
+                        logRoleError(role, userId, error);
+                    }
+                });
+    }
+
+    private void startSyncRun() {
+        if (isRunning.compareAndSet(false, true)) {
+            logger.info("🔗 Starting role synchronization for linked players...");
+            synchronizeRoles();
+        }
     }
-    
+
     private void synchronizeRoles() {
+        long start = System.nanoTime();
+        runStart = start;
         try {
-            List<String> linkedDiscordIds = database.getAllLinkedDiscordIds();
-            logger.info("🔗 Found {} linked accounts to synchronize", linkedDiscordIds.size());
-            
-            if (linkedDiscordIds.isEmpty()) {
+            Role role = findRole();
+            if (role == null) {
                 isRunning.set(false);
                 return;
             }
-            
-            // Calculate total time for rate limiting info
-            long totalTimeMinutes = (linkedDiscordIds.size() * RATE_LIMIT_DELAY_SECONDS) / 60;
-            logger.info("🔗 Role synchronization will take approximately {} minutes", totalTimeMinutes);
-            
-            // Process each linked account with rate limiting
-            for (int i = 0; i < linkedDiscordIds.size(); i++) {
-                final String discordId = linkedDiscordIds.get(i);
-                final int index = i;
-                
-                executor.schedule(() -> {
-                    processRoleAssignment(discordId);
-                    
-                    // Log progress every 20 assignments with percentage
-                    if ((index + 1) % 20 == 0) {
-                        double progressPercentage = ((double) (index + 1) / linkedDiscordIds.size()) * 100;
-                        logger.info("🔗 Role sync progress: {}/{} completed ({}%)", index + 1, linkedDiscordIds.size(), String.format("%.2f", progressPercentage));
+            Guild guild = role.getGuild();
+
+            // one chunked load of the whole member list instead of a REST call per account
+            List<Member> members = guild.loadMembers().get();
+            Map<Long, Member> membersById = new HashMap<>(members.size() * 2);
+            for (Member member : members) {
+                membersById.put(member.getIdLong(), member);
+            }
+
+            // stream the links page by page; only the linked members are remembered, so memory
+            // is bounded by the guild's size rather than the table's
+            Set<Long> linkedMembers = new HashSet<>();
+            List<Member> toAdd = new ArrayList<>();
+            List<Member> toRemove = new ArrayList<>();
+            int linked = 0;
+            int departed = 0;
+
+            for (LinkInfo link : database.allLinks()) {
+                linked++;
+                long discordId;
+                try {
+                    discordId = Long.parseLong(link.discordId());
+                } catch (NumberFormatException e) {
+                    logger.warn("🔗 Skipping link for {}: malformed Discord ID '{}'", link.uuid(), link.discordId());
+                    continue;
+                }
+                Member member = membersById.get(discordId);
+                if (member == null) {
+                    // Member not found - remove from database
+                    if (database.removeLinkByDiscordId(link.discordId())) {
+                        departed++;
                     }
-                    
-                    // Mark as finished when done
-                    if (index == linkedDiscordIds.size() - 1) {
-                        isRunning.set(false);
-                        logger.info("🔗 Role synchronization completed for all {} linked accounts", linkedDiscordIds.size());
+                } else {
+                    linkedMembers.add(member.getIdLong());
+                    if (!member.getRoles().contains(role)) {
+                        toAdd.add(member);
                     }
-                }, i * RATE_LIMIT_DELAY_SECONDS, TimeUnit.SECONDS);
+                }
             }
-            
-        } catch (Exception e) {
-            logger.error("🔗 Error during role synchronization", e);
-            isRunning.set(false);
-        }
-    }
-    
-    private void processRoleAssignment(String discordId) {
-        try {
-            // Find the role across all guilds the bot is in
-            Role targetRole = null;
-            Guild targetGuild = null;
-            Member targetMember = null;
-            
-            // First, find the role in any guild
-            for (Guild guild : jda.getGuilds()) {
-                Role role = guild.getRoleById(roleId);
-                if (role != null) {
-                    targetRole = role;
-                    targetGuild = guild;
-                    break;
+
+            if (syncConfig.removeFromUnlinked) {
+                for (Member member : members) {
+                    if (!linkedMembers.contains(member.getIdLong()) && member.getRoles().contains(role)) {
+                        toRemove.add(member);
+                    }
                 }
             }
-            
-            if (targetRole == null || targetGuild == null) {
-                logger.warn("🔗 Role with ID {} not found in any guild", roleId);
-                return;
+
+            if (departed > 0) {
+                logger.info("🔗 Removed {} linked accounts whose Discord users are no longer in the server", departed);
             }
-            
-            // Find the member in the guild where we found the role using direct API call
-            try {
-                targetMember = targetGuild.retrieveMemberById(discordId).complete();
-            } catch (Exception e) {
-                // Member not found - remove from database and log
-                boolean removed = database.removeLinkByDiscordId(discordId);
-                if (removed) {
-                    logger.info("🔗 Removed user {} from database - no longer in Discord server", discordId);
-                }
+            int changes = toAdd.size() + toRemove.size();
+            logger.info("🔗 {} linked accounts, {} members; {} role changes needed", linked, members.size(), changes);
+
+            syncTimer.recordSince(start);
+            syncTotal.set(changes);
+            syncApplied.set(0);
+            syncFailed.set(0);
+
+            if (changes == 0) {
+                runTimer.recordSince(start);
+                isRunning.set(false);
                 return;
             }
-            
-            // Check if member already has the role
-            if (targetMember.getRoles().contains(targetRole)) {
-                return; // Already has the role
+            for (Member member : toAdd) {
+                queueSyncChange(role, member.getIdLong(), true);
+            }
+            for (Member member : toRemove) {
+                queueSyncChange(role, member.getIdLong(), false);
             }
-            
-            // Add the role
-            final Role finalRole = targetRole;
-            final Guild finalGuild = targetGuild;
-            final Member finalMember = targetMember;
-            
-            finalGuild.addRoleToMember(finalMember, finalRole)
-                    .queue(
-                            success -> logger.info("🔗 Added role {} to user {}", finalRole.getName(), finalMember.getEffectiveName()),
-                            error -> {
-                                if (error.getMessage().contains("Missing Permissions")) {
-                                    logger.warn("🔗 Missing permissions to assign role {} in guild {}", finalRole.getName(), finalGuild.getName());
-                                } else {
-                                    logger.error("🔗 Failed to assign role {} to user {}: {}", finalRole.getName(), finalMember.getEffectiveName(), error.getMessage());
-                                }
-                            }
-                    );
-            
         } catch (Exception e) {
-            logger.error("🔗 Error processing role assignment for Discord ID {}", discordId, e);
+            logger.error("🔗 Error during role synchronization", e);
+            isRunning.set(false);
         }
     }
-    
+
+    private void queueSyncChange(Role role, long userId, boolean add) {
+        actionQueue.changeRole(role, userId, add, DiscordActionQueue.Priority.BACKGROUND)
+                .whenComplete((changed, error) -> {
+                    if (error != null) {
+                        logRoleError(role, userId, error);
+                    }
+                    onSyncChangeDone(error == null);
+                });
+    }
+
+    private void onSyncChangeDone(boolean success) {
+        if (success) {
+            syncApplied.incrementAndGet();
+        } else {
+            syncFailed.incrementAndGet();
+        }
+        int done = syncApplied.get() + syncFailed.get();
+        int total = syncTotal.get();
+
+        // Log progress every 100 changes with percentage
+        if (done % 100 == 0 && done < total) {
+            double progressPercentage = ((double) done / total) * 100;
+            logger.info("🔗 Role sync progress: {}/{} completed ({}%)", done, total, String.format("%.2f", progressPercentage));
+        }
+        if (done == total) {
+            runTimer.recordSince(runStart);
+            isRunning.set(false);
+            logger.info("🔗 Role synchronization completed: {} changes applied, {} failed", syncApplied.get(), syncFailed.get());
+        }
+    }
+
+    private void logRoleError(Role role, long userId, Throwable error) {
+        if (error.getMessage() != null && error.getMessage().contains("Missing Permissions")) {
+            logger.warn("🔗 Missing permissions to assign role {} in guild {}", role.getName(), role.getGuild().getName());
+        } else {
+            logger.error("🔗 Failed to update role {} for user {}: {}", role.getName(), userId, error.getMessage());
+        }
+    }
+
+    private Role findRole() {
+        Role role = guildContext.linkedRole();
+        if (role == null) {
+            logger.warn("🔗 Role with ID {} not found", roleId);
+        }
+        return role;
+    }
+
     /**
      * Shuts down the role manager and its executor.
      */
@@ -186,4 +266,4 @@ public class RoleManager {
             Thread.currentThread().interrupt();
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,124 @@
+package com.confect1on.sentinel.discord;
+
+import com.confect1on.sentinel.config.SentinelConfig;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import org.slf4j.Logger;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+/**
+ * Decides who may use each slash command, shared by every command listener.
+ *
+ * discord.commandRoles gives each command a list of role IDs; "staff" stands for every
+ * discord.staffRoles entry and "everyone" lets anyone use it. Commands without an entry are
+ * staff-only. The lists are compiled into sorted long arrays whenever the config is
+ * (re)loaded, so a check is one pass over the member's roles with a binary search each,
+ * with no role lookups or string comparisons.
+ */
+public class StaffPermissions {
+    private static final String STAFF = "staff";
+    private static final String EVERYONE = "everyone";
+    private static final Rule NOBODY = new Rule(false, new long[0]);
+
+    private final Logger logger;
+    private volatile Table table;
+
+    public StaffPermissions(SentinelConfig.Discord config, Logger logger) {
+        this.logger = logger;
+        this.table = compile(config);
+    }
+
+    /**
+     * Compiles the role sets for a reloaded config; the returned step publishes them.
+     */
+    public Runnable prepare(SentinelConfig.Discord config) {
+        Table next = compile(config);
+        return () -> table = next;
+    }
+
+    /**
+     * Whether the member may use the command. Fails shut: no member (a DM) or no
+     * configured roles means no access, unless the command is open to everyone.
+     */
+    public boolean canUse(String command, Member member) {
+        Rule rule = table.commands().getOrDefault(command, table.staff());
+        if (rule.everyone()) {
+            return true;
+        }
+        return member != null && hasAnyRole(member, rule.roles());
+    }
+
+    /**
+     * Whether the member holds one of discord.staffRoles.
+     */
+    public boolean isStaff(Member member) {
+        return member != null && hasAnyRole(member, table.staff().roles());
+    }
+
+    private static boolean hasAnyRole(Member member, long[] roles) {
+        if (roles.length == 0) {
+            return false;
+        }
+        for (Role role : member.getRoles()) {
+            if (Arrays.binarySearch(roles, role.getIdLong()) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Table compile(SentinelConfig.Discord config) {
+        long[] staff = parseRoles(config.staffRoles, null, "staffRoles");
+        Rule staffRule = staff.length == 0 ? NOBODY : new Rule(false, staff);
+
+        Map<String, Rule> commands = new HashMap<>();
+        if (config.commandRoles != null) {
+            for (Map.Entry<String, String[]> entry : config.commandRoles.entrySet()) {
+                String[] roles = entry.getValue() == null ? new String[0] : entry.getValue();
+                boolean everyone = Arrays.stream(roles).anyMatch(EVERYONE::equalsIgnoreCase);
+                commands.put(entry.getKey(), new Rule(everyone, parseRoles(roles, staff, "commandRoles." + entry.getKey())));
+            }
+        }
+        return new Table(staffRule, Map.copyOf(commands));
+    }
+
+    /**
+     * Parses role IDs into a sorted, de-duplicated array, expanding "staff" when staff roles are given.
+     */
+    private long[] parseRoles(String[] ids, long[] staff, String setting) {
+        if (ids == null) {
+            return new long[0];
+        }
+        LongStream.Builder roles = LongStream.builder();
+        boolean staffAdded = false;
+        for (String id : ids) {
+            if (id == null || id.isBlank() || id.equalsIgnoreCase(EVERYONE)) continue;
+            if (staff != null && id.equalsIgnoreCase(STAFF)) {
+                if (!staffAdded) {
+                    Arrays.stream(staff).forEach(roles);
+                    staffAdded = true;
+                }
+                continue;
+            }
+            long role;
+            try {
+                role = Long.parseUnsignedLong(id.trim());
+            } catch (NumberFormatException e) {
+                logger.warn("⚠️ Ignoring {} entry '{}': not a role ID", setting, id);
+                continue;
+            }
+            roles.add(role);
+        }
+        return roles.build().sorted().distinct().toArray();
+    }
+
+    private record Rule(boolean everyone, long[] roles) {
+    }
+
+    private record Table(Rule staff, Map<String, Rule> commands) {
+    }
+}
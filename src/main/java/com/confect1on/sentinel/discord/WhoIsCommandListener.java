@@ -2,58 +2,84 @@ package com.confect1on.sentinel.discord;
 
 import com.confect1on.sentinel.db.DatabaseManager;
 import com.confect1on.sentinel.db.LinkInfo;
+import com.confect1on.sentinel.metrics.MetricsRegistry;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.interactions.commands.build.Commands;
 import net.dv8tion.jda.api.interactions.commands.build.SlashCommandData;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
 import org.slf4j.Logger;
 
+import java.util.List;
+
 public class WhoIsCommandListener extends ListenerAdapter {
     private final DatabaseManager db;
     private final Logger logger;
+    private final StaffPermissions permissions;
+    private final CommandMetrics commandMetrics;
+    private final CommandExecutor commandExecutor;
 
     private final SlashCommandData commandData = Commands.slash("whois", "Lookup a link")
             .addOption(OptionType.USER,   "discord",   "Mention a Discord user",      false)
-            .addOption(OptionType.STRING, "minecraft", "Minecraft username (cached)", false);
+            .addOption(OptionType.STRING, "minecraft", "Minecraft username (cached)", false, true);
 
-    public WhoIsCommandListener(DatabaseManager db, Logger logger) {
+    WhoIsCommandListener(DatabaseManager db, StaffPermissions permissions, CommandExecutor commandExecutor, MetricsRegistry metrics, Logger logger) {
         this.db = db;
+        this.permissions = permissions;
+        this.commandExecutor = commandExecutor;
         this.logger = logger;
+        this.commandMetrics = new CommandMetrics(metrics, "whois");
     }
 
     public SlashCommandData getCommandData() {
         return commandData;
     }
 
+    @Override
+    public void onCommandAutoCompleteInteraction(CommandAutoCompleteInteractionEvent evt) {
+        if (!evt.getName().equals("whois") || !evt.getFocusedOption().getName().equals("minecraft")) return;
+
+        if (!permissions.canUse("whois", evt.getMember())) {
+            evt.replyChoiceStrings(List.of()).queue();
+            return;
+        }
+        evt.replyChoiceStrings(db.suggestUsernames(evt.getFocusedOption().getValue(), OptionData.MAX_CHOICES)).queue();
+    }
+
     @Override
     public void onSlashCommandInteraction(SlashCommandInteractionEvent evt) {
         if (!evt.getName().equals("whois")) return;
 
-        OptionMapping discordOpt   = evt.getOption("discord");
-        OptionMapping minecraftOpt = evt.getOption("minecraft");
-
-        // block til defer is sent to make sure we make it within 3s
-        InteractionHook hook;
-        try {
-            hook = evt.deferReply(true).complete();
-        } catch (Exception e) {
-            logger.error("❌ Failed to defer interaction for /whois", e);
+        if (!permissions.canUse("whois", evt.getMember())) {
+            evt.reply("❌ You don't have permission to use this command.").setEphemeral(true).queue();
             return;
         }
 
-        // proceed :)
+        long start = System.nanoTime();
+        OptionMapping discordOpt   = evt.getOption("discord");
+        OptionMapping minecraftOpt = evt.getOption("minecraft");
+
         if ((discordOpt == null && minecraftOpt == null) ||
                 (discordOpt != null && minecraftOpt != null)) {
-            hook.sendMessage("❗️ You must specify *either* a Discord user *or* a Minecraft username.").queue();
+            evt.reply("❗️ You must specify *either* a Discord user *or* a Minecraft username.").setEphemeral(true).queue();
+            commandMetrics.handledSince(start);
             return;
         }
+        String discordId = discordOpt != null ? discordOpt.getAsUser().getId() : null;
+        String username = minecraftOpt != null ? minecraftOpt.getAsString() : null;
+
+        // acknowledge right away, then do the lookup on the command executor
+        commandExecutor.deferThen(evt, true, commandMetrics, start, hook -> lookup(hook, discordId, username));
+    }
 
-        LinkInfo info = discordOpt != null
-                ? db.findByDiscordId(discordOpt.getAsUser().getId()).orElse(null)
-                : db.findByUsername(minecraftOpt.getAsString()).orElse(null);
+    private void lookup(InteractionHook hook, String discordId, String username) {
+        LinkInfo info = discordId != null
+                ? db.findByDiscordId(discordId).orElse(null)
+                : db.findByUsername(username).orElse(null);
 
         if (info == null) {
             hook.sendMessage("❌ No link found for that identifier.").queue();
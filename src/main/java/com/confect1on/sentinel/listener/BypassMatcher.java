@@ -0,0 +1,232 @@
+package com.confect1on.sentinel.listener;
+
+import java.net.IDN;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Matches virtual hosts against the bypassServers entries with one pass over the host,
+ * however many entries there are.
+ *
+ * Entry forms (case-insensitive):
+ *  - "lobby"              host contains "lobby" (the original behaviour)
+ *  - "=lobby.example.net" host is exactly "lobby.example.net"
+ *  - "*.example.net"      host ends with ".example.net"
+ *  - "lobby.*"            host starts with "lobby."
+ *
+ * Every entry is compiled into one Aho-Corasick automaton. The anchored forms are
+ * pattern strings with '^' and '$' markers, and the host is fed in as '^' host '$'. The
+ * automaton is a dense transition table, so matching is a table lookup per character and
+ * allocates nothing.
+ *
+ * Hosts arrive in their ASCII (punycode) form, so internationalized entries are converted
+ * with IDN.toASCII when compiled. Entries that still aren't ASCII, or that contain the '^'
+ * and '$' markers, are rejected (see {@link #rejected()}) rather than compiled. Every
+ * pattern is ASCII, so a host character no pattern uses, ASCII or not, always falls
+ * back to the root state.
+ */
+public final class BypassMatcher {
+    private static final char START = '^';
+    private static final char END = '$';
+
+    // state -> character class -> next state, with failure links already folded in
+    private final int[][] transitions;
+    // whether reaching the state means some entry matched
+    private final boolean[] accepting;
+    // ASCII character -> character class; 0 is "no entry uses this character", which never has a trie edge
+    private final int[] classes;
+    private final List<String> rejected;
+
+    private BypassMatcher(int[][] transitions, boolean[] accepting, int[] classes, List<String> rejected) {
+        this.transitions = transitions;
+        this.accepting = accepting;
+        this.classes = classes;
+        this.rejected = rejected;
+    }
+
+    /**
+     * Compiles the configured entries. Blank entries are ignored and invalid ones rejected.
+     */
+    public static BypassMatcher compile(String[] entries) {
+        List<String> patterns = new ArrayList<>();
+        List<String> rejected = new ArrayList<>();
+        if (entries != null) {
+            for (String entry : entries) {
+                try {
+                    String pattern = toPattern(entry);
+                    if (pattern != null) {
+                        patterns.add(pattern);
+                    }
+                } catch (IllegalArgumentException e) {
+                    rejected.add(entry);
+                }
+            }
+        }
+        if (patterns.isEmpty()) {
+            return new BypassMatcher(new int[1][1], new boolean[1], new int[128], List.copyOf(rejected));
+        }
+
+        // character classes: one per distinct ASCII character in the patterns, upper and lower case share one
+        int[] classes = new int[128];
+        int classCount = 1;
+        for (String pattern : patterns) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c < 128 && classes[c] == 0) {
+                    classes[c] = classCount++;
+                    if (c >= 'a' && c <= 'z') {
+                        classes[c - 'a' + 'A'] = classes[c];
+                    }
+                }
+            }
+        }
+
+        // trie
+        List<int[]> trie = new ArrayList<>();
+        List<Boolean> output = new ArrayList<>();
+        trie.add(newState(classCount));
+        output.add(false);
+        for (String pattern : patterns) {
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int cls = classOf(classes, pattern.charAt(i));
+                if (trie.get(state)[cls] == 0) {
+                    trie.get(state)[cls] = trie.size();
+                    trie.add(newState(classCount));
+                    output.add(false);
+                }
+                state = trie.get(state)[cls];
+            }
+            output.set(state, true);
+        }
+
+        // breadth-first failure links, folded straight into the transition table
+        int[][] transitions = trie.toArray(new int[0][]);
+        boolean[] accepting = new boolean[transitions.length];
+        for (int i = 0; i < accepting.length; i++) {
+            accepting[i] = output.get(i);
+        }
+        int[] failure = new int[transitions.length];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int cls = 0; cls < classCount; cls++) {
+            int next = transitions[0][cls];
+            if (next != 0) {
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            accepting[state] |= accepting[failure[state]];
+            for (int cls = 0; cls < classCount; cls++) {
+                int next = transitions[state][cls];
+                if (next != 0) {
+                    failure[next] = transitions[failure[state]][cls];
+                    queue.add(next);
+                } else {
+                    transitions[state][cls] = transitions[failure[state]][cls];
+                }
+            }
+        }
+        return new BypassMatcher(transitions, accepting, classes, List.copyOf(rejected));
+    }
+
+    /**
+     * Entries that were left out because they can't match a host: non-ASCII even after
+     * IDN conversion, or containing '^' or '$'.
+     */
+    public List<String> rejected() {
+        return rejected;
+    }
+
+    /**
+     * Whether the host matches any entry. A trailing dot (fully qualified form) is ignored.
+     */
+    public boolean matches(String host) {
+        if (host == null || host.isEmpty() || transitions.length == 1) {
+            return false;
+        }
+        int length = host.charAt(host.length() - 1) == '.' ? host.length() - 1 : host.length();
+
+        int state = transitions[0][classOf(classes, START)];
+        if (accepting[state]) return true;
+        for (int i = 0; i < length; i++) {
+            state = transitions[state][classOf(classes, host.charAt(i))];
+            if (accepting[state]) return true;
+        }
+        state = transitions[state][classOf(classes, END)];
+        return accepting[state];
+    }
+
+    /**
+     * Turns an entry into its pattern, or null for a blank entry.
+     *
+     * @throws IllegalArgumentException if the entry can't be compiled
+     */
+    private static String toPattern(String entry) {
+        if (entry == null) {
+            return null;
+        }
+        String rule = entry.trim().toLowerCase(Locale.ROOT);
+        if (rule.startsWith("=")) {
+            String host = toAscii(rule.substring(1));
+            return host.isEmpty() ? null : START + host + END;
+        }
+        boolean suffix = rule.startsWith("*");
+        boolean prefix = rule.endsWith("*") && rule.length() > 1;
+        String body = toAscii(rule.substring(suffix ? 1 : 0, rule.length() - (prefix ? 1 : 0)));
+        if (body.isEmpty()) {
+            return null;
+        }
+        if (suffix && prefix) {
+            return body;
+        }
+        if (suffix) {
+            return body + END;
+        }
+        if (prefix) {
+            return START + body;
+        }
+        return body;
+    }
+
+    /**
+     * Converts an internationalized name to punycode, leaving ASCII untouched.
+     *
+     * @throws IllegalArgumentException if the result still has a character no ASCII host can contain
+     */
+    private static String toAscii(String body) {
+        String ascii = body;
+        if (!isAscii(body)) {
+            // label by label, so the leading or trailing dots of partial entries survive
+            String[] labels = body.split("\\.", -1);
+            for (int i = 0; i < labels.length; i++) {
+                if (!isAscii(labels[i])) {
+                    labels[i] = IDN.toASCII(labels[i], IDN.ALLOW_UNASSIGNED).toLowerCase(Locale.ROOT);
+                }
+            }
+            ascii = String.join(".", labels);
+        }
+        if (!isAscii(ascii) || ascii.indexOf(START) >= 0 || ascii.indexOf(END) >= 0) {
+            throw new IllegalArgumentException("not a host pattern: " + body);
+        }
+        return ascii;
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 128) return false;
+        }
+        return true;
+    }
+
+    private static int[] newState(int classCount) {
+        return new int[classCount];
+    }
+
+    private static int classOf(int[] classes, char c) {
+        return c < 128 ? classes[c] : 0;
+    }
+
+}
@@ -1,140 +1,325 @@
 package com.confect1on.sentinel.listener;
 
 import com.confect1on.sentinel.db.DatabaseManager;
+import com.confect1on.sentinel.db.LinkInfo;
 import com.confect1on.sentinel.config.SentinelConfig;
 import com.confect1on.sentinel.discord.DiscordManager;
+import com.confect1on.sentinel.discord.QuarantineChecker;
+import com.confect1on.sentinel.metrics.Counter;
+import com.confect1on.sentinel.metrics.LatencyHistogram;
+import com.confect1on.sentinel.metrics.MetricsRegistry;
+import com.velocitypowered.api.event.EventTask;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.LoginEvent;
 import com.velocitypowered.api.event.ResultedEvent.ComponentResult;
 import net.kyori.adventure.text.Component;
 import org.slf4j.Logger;
 
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public class LoginListener {
+    private static final String STAGE_METRIC = "sentinel_login_stage_seconds";
+    private static final String STAGE_HELP = "Time spent in each stage of a login check";
+    private static final String RESULT_METRIC = "sentinel_logins_total";
+    private static final String RESULT_HELP = "Login checks by outcome";
 
     private final DatabaseManager database;
     private final Logger logger;
-    private final SentinelConfig config;
     private final DiscordManager discordManager;
 
-    public LoginListener(DatabaseManager database, SentinelConfig config, DiscordManager discordManager, Logger logger) {
+    // swapped as a whole on reload so a login never sees a config with another config's matcher
+    private volatile Settings settings;
+
+    // Login checks do JDBC and Discord I/O, so they run here instead of on Velocity's event threads
+    private final ThreadPoolExecutor executor;
+
+    private final LatencyHistogram totalTimer;
+    private final LatencyHistogram bypassTimer;
+    private final LatencyHistogram queueTimer;
+    private final LatencyHistogram lookupTimer;
+    private final LatencyHistogram membershipTimer;
+    private final LatencyHistogram quarantineTimer;
+    private final LatencyHistogram codeTimer;
+    private final LatencyHistogram usernameTimer;
+    private final Counter bypassed;
+    private final Counter allowed;
+    private final Counter unlinked;
+    private final Counter leftDiscord;
+    private final Counter quarantined;
+    private final Counter busy;
+    private final Counter failedOpen;
+    private final Counter failedClosed;
+
+    public LoginListener(DatabaseManager database, SentinelConfig config, DiscordManager discordManager, MetricsRegistry metrics, Logger logger) {
         this.database = database;
-        this.config = config;
         this.discordManager = discordManager;
         this.logger = logger;
+        this.settings = settingsFor(config);
+
+        this.totalTimer = metrics.timer("sentinel_login_seconds", "Time from the login event to its result");
+        this.bypassTimer = metrics.timer(STAGE_METRIC, STAGE_HELP, "stage", "bypass_check");
+        this.queueTimer = metrics.timer(STAGE_METRIC, STAGE_HELP, "stage", "queue_wait");
+        this.lookupTimer = metrics.timer(STAGE_METRIC, STAGE_HELP, "stage", "link_lookup");
+        this.membershipTimer = metrics.timer(STAGE_METRIC, STAGE_HELP, "stage", "discord_membership");
+        this.quarantineTimer = metrics.timer(STAGE_METRIC, STAGE_HELP, "stage", "quarantine_check");
+        this.codeTimer = metrics.timer(STAGE_METRIC, STAGE_HELP, "stage", "code_generation");
+        this.usernameTimer = metrics.timer(STAGE_METRIC, STAGE_HELP, "stage", "username_update");
+        this.bypassed = metrics.counter(RESULT_METRIC, RESULT_HELP, "result", "bypass");
+        this.allowed = metrics.counter(RESULT_METRIC, RESULT_HELP, "result", "allowed");
+        this.unlinked = metrics.counter(RESULT_METRIC, RESULT_HELP, "result", "unlinked");
+        this.leftDiscord = metrics.counter(RESULT_METRIC, RESULT_HELP, "result", "left_discord");
+        this.quarantined = metrics.counter(RESULT_METRIC, RESULT_HELP, "result", "quarantined");
+        this.busy = metrics.counter(RESULT_METRIC, RESULT_HELP, "result", "busy");
+        this.failedOpen = metrics.counter(RESULT_METRIC, RESULT_HELP, "result", "failed_open");
+        this.failedClosed = metrics.counter(RESULT_METRIC, RESULT_HELP, "result", "failed_closed");
+
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(1, config.login.threads);
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.login.queueSize)),
+                r -> {
+                    Thread t = new Thread(r, "Sentinel-Login-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
     }
 
     @Subscribe
-    public void onLogin(LoginEvent event) {
+    public EventTask onLogin(LoginEvent event) {
+        long start = System.nanoTime();
         UUID uuid = event.getPlayer().getGameProfile().getId();
         String username = event.getPlayer().getUsername();
-        
+
         // Get the virtual host they're connecting through
         String virtualHost = event.getPlayer().getVirtualHost()
             .map(host -> host.getHostString())
             .orElse("");
 
         // Check if this is a bypass server based on the virtual host
-        if (virtualHost != null && !virtualHost.isEmpty()) {
-            for (String server : config.bypassServers.servers) {
-                if (virtualHost.toLowerCase().contains(server.toLowerCase())) {
-                    logger.info("✅ {} ({}) connecting through bypass virtual host {}. Allowing login.", 
-                        username, uuid, virtualHost);
-                    event.setResult(ComponentResult.allowed());
-                    return;
-                }
-            }
+        Settings current = settings;
+        boolean bypass = current.bypassMatcher().matches(virtualHost);
+        bypassTimer.recordSince(start);
+        if (bypass) {
+            logger.info("✅ {} ({}) connecting through bypass virtual host {}. Allowing login.",
+                username, uuid, virtualHost);
+            event.setResult(ComponentResult.allowed());
+            bypassed.increment();
+            totalTimer.recordSince(start);
+            return null;
         }
 
+        // everything past this point does I/O, so hand it to the login pool
+        CompletableFuture<ComponentResult> check;
         try {
-            if (database.isLinked(uuid)) {
-                String discordId = database.getDiscordId(uuid);
-                
-                // Check if Discord user is still in the server and handle cleanup
-                if (discordManager != null && discordManager.getQuarantineChecker() != null) {
-                    // This will check if the user is still in Discord and clean up if they left
-                    boolean isStillInDiscord = isDiscordUserStillInServer(discordId);
-                    
-                    if (!isStillInDiscord) {
-                        // User was kicked/left Discord, they're no longer linked
-                        logger.info("🔗 {} ({}) was linked but Discord user {} is no longer in server. Generating new link code.", 
-                            username, uuid, discordId);
-                        
-                        // Generate a new link code
-                        String code = generateCode();
-                        database.savePendingCode(uuid, code);
-                        
-                        event.setResult(ComponentResult.denied(
-                            Component.text("Your Discord account is no longer linked.\n" +
-                                "Use code §b" + code + "§r in Discord to link.")
-                        ));
-                        return;
-                    }
-                    
-                    // Check for quarantine if they're still in Discord
-                    if (discordManager.getQuarantineChecker().isQuarantined(discordId)) {
-                        logger.debug("🚫 {} ({}) is quarantined. Denying login.", username, uuid);
-                        event.setResult(ComponentResult.denied(
-                                Component.text(config.discord.quarantineMessage)
-                        ));
-                        return;
-                    }
-                }
-                
-                // save the current username each login for quick lookup
-                database.updateUsername(uuid, username);
-
-                logger.debug("✅ {} ({}) is linked. Allowing login.", username, uuid);
-                event.setResult(ComponentResult.allowed());
-            } else {
-                // Check if they were linked but removed due to leaving Discord
-                String discordId = database.getDiscordId(uuid);
-                if (discordId != null) {
-                    // THIS SHOULD NEVER HAPPEN!
-                    logger.warn("🔗 {} ({}) was linked but needs to relink.", username, uuid);
-                    event.setResult(ComponentResult.denied(
-                            Component.text("Your Discord account is no longer linked.\n" +
-                                    "Please contact an administrator to relink your account.")
-                    ));
-                    return;
-                }
-                
-                // generate & rotate the code
-                String code = generateCode();
-                database.savePendingCode(uuid, code);
-
-                logger.info("❌ {} ({}) is not linked. Generated code: {}", username, uuid, code);
-                event.setResult(ComponentResult.denied(
-                        Component.text("This Minecraft account is not linked.\n" +
-                                "Use code §b" + code + "§r in Discord to link.")
-                ));
-            }
-        } catch (Exception e) {
-            logger.error("⚠️ Error during login check for {} ({})", username, uuid, e);
+            long queued = System.nanoTime();
+            check = CompletableFuture.supplyAsync(() -> {
+                queueTimer.recordSince(queued);
+                return checkLogin(current.config(), uuid, username);
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            logger.warn("⚠️ Login queue is full, turning away {} ({})", username, uuid);
             event.setResult(ComponentResult.denied(
-                    Component.text("A server error occurred. Try again later.")
+                    Component.text("The server is busy. Try again in a moment.")
             ));
+            busy.increment();
+            totalTimer.recordSince(start);
+            return null;
+        }
+
+        return EventTask.resumeWhenComplete(check
+                .orTimeout(current.config().login.timeoutMillis, TimeUnit.MILLISECONDS)
+                .exceptionally(error -> onCheckFailed(current.config(), error, username, uuid))
+                .thenAccept(result -> {
+                    event.setResult(result);
+                    totalTimer.recordSince(start);
+                }));
+    }
+
+    /**
+     * Prepares for a reloaded config. Called on the reload thread, so the bypass matcher is
+     * compiled there; the returned step publishes it, and logins only ever see the finished result.
+     */
+    public Runnable prepareConfig(SentinelConfig config) {
+        Settings next = settingsFor(config);
+        return () -> settings = next;
+    }
+
+    private Settings settingsFor(SentinelConfig config) {
+        Settings next = Settings.of(config);
+        for (String entry : next.bypassMatcher().rejected()) {
+            logger.warn("⚠️ Ignoring bypassServers entry '{}': not a valid host pattern", entry);
         }
+        return next;
+    }
+
+    /**
+     * Whether the virtual host matches one of the configured bypass servers.
+     */
+    boolean isBypassHost(String virtualHost) {
+        return settings.bypassMatcher().matches(virtualHost);
     }
 
     /**
-     * Checks if a Discord user is still in the server.
-     * If they're not, removes them from the database.
+     * Runs the link, membership and quarantine checks for a player.
+     * Called on the login pool; each step that can fail is wrapped so its
+     * configured fail-open/fail-closed policy decides the outcome.
      */
-    private boolean isDiscordUserStillInServer(String discordId) {
-        if (discordId == null) return false;
-        
+    ComponentResult checkLogin(UUID uuid, String username) {
+        return checkLogin(settings.config(), uuid, username);
+    }
+
+    private ComponentResult checkLogin(SentinelConfig config, UUID uuid, String username) {
+        Optional<LinkInfo> link = step("link lookup", lookupTimer, config.login.failOpenOnDatabaseError,
+                () -> database.lookupByUuid(uuid));
+
+        if (link.isPresent()) {
+            String discordId = link.get().discordId();
+
+            // Check if Discord user is still in the server and handle cleanup
+            QuarantineChecker checker = discordManager != null ? discordManager.getQuarantineChecker() : null;
+            if (checker != null) {
+                // This will check if the user is still in Discord and clean up if they left
+                boolean isStillInDiscord = step("Discord membership check", membershipTimer,
+                        config.login.failOpenOnMembershipError, () -> checker.isUserStillInDiscord(discordId));
+
+                if (!isStillInDiscord) {
+                    // User was kicked/left Discord, they're no longer linked
+                    logger.info("🔗 {} ({}) was linked but Discord user {} is no longer in server. Generating new link code.",
+                        username, uuid, discordId);
+
+                    // Hand out a link code, reusing a fresh one if they already have it.
+                    // They are known not to be linked any more, so a failure here never lets them in.
+                    String code = step("pending code save", codeTimer, false,
+                            () -> database.getOrCreatePendingCode(uuid, username, this::generateCode));
+
+                    leftDiscord.increment();
+                    return ComponentResult.denied(
+                        Component.text("Your Discord account is no longer linked.\n" +
+                            "Use code §b" + code + "§r in Discord to link.")
+                    );
+                }
+
+                // Check for quarantine if they're still in Discord
+                if (step("quarantine check", quarantineTimer, config.login.failOpenOnQuarantineError,
+                        () -> checker.isQuarantined(discordId))) {
+                    logger.debug("🚫 {} ({}) is quarantined. Denying login.", username, uuid);
+                    quarantined.increment();
+                    return ComponentResult.denied(
+                            Component.text(config.discord.quarantineMessage)
+                    );
+                }
+            }
+
+            // keep the cached username current, skipping the write when it hasn't changed
+            long usernameStart = System.nanoTime();
+            database.updateUsernameIfChanged(link.get(), username);
+            usernameTimer.recordSince(usernameStart);
+
+            logger.debug("✅ {} ({}) is linked. Allowing login.", username, uuid);
+            allowed.increment();
+            return ComponentResult.allowed();
+        }
+
+        // hand out a code, only rotating it once the previous one has gone stale;
+        // the player is known to be unlinked, so a failure here never lets them in
+        String code = step("pending code save", codeTimer, false,
+                () -> database.getOrCreatePendingCode(uuid, username, this::generateCode));
+
+        logger.info("❌ {} ({}) is not linked. Link code: {}", username, uuid, code);
+        unlinked.increment();
+        return ComponentResult.denied(
+                Component.text("This Minecraft account is not linked.\n" +
+                        "Use code §b" + code + "§r in Discord to link.")
+        );
+    }
+
+    private <T> T step(String name, LatencyHistogram timer, boolean failOpen, Supplier<T> action) {
+        long start = System.nanoTime();
         try {
-            // Use the QuarantineChecker's method to check if user is still in Discord
-            return discordManager.getQuarantineChecker().isUserStillInDiscord(discordId);
-        } catch (Exception e) {
-            logger.error("🔗 Error checking if Discord user {} is still in server", discordId, e);
-            return true; // Default to assuming they're still there on error
+            return action.get();
+        } catch (RuntimeException e) {
+            throw new LoginStepException(name, failOpen, e);
+        } finally {
+            timer.recordSince(start);
         }
     }
 
-    private String generateCode() {
+    /**
+     * Maps a failed or timed out login check onto the configured policy.
+     */
+    private ComponentResult onCheckFailed(SentinelConfig config, Throwable error, String username, UUID uuid) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+
+        boolean failOpen;
+        if (cause instanceof TimeoutException) {
+            failOpen = config.login.failOpenOnTimeout;
+            logger.warn("⚠️ Login check for {} ({}) exceeded {}ms", username, uuid, config.login.timeoutMillis);
+        } else if (cause instanceof LoginStepException stepError) {
+            failOpen = stepError.failOpen;
+            logger.error("⚠️ {} failed during login check for {} ({})", stepError.step, username, uuid, stepError.getCause());
+        } else {
+            failOpen = false;
+            logger.error("⚠️ Error during login check for {} ({})", username, uuid, cause);
+        }
+
+        if (failOpen) {
+            logger.warn("⚠️ Allowing {} ({}) in despite the failed check (fail-open policy)", username, uuid);
+            failedOpen.increment();
+            return ComponentResult.allowed();
+        }
+        failedClosed.increment();
+        return ComponentResult.denied(
+                Component.text("A server error occurred. Try again later.")
+        );
+    }
+
+    String generateCode() {
         return UUID.randomUUID().toString().substring(0, 6).toUpperCase();
     }
+
+    /**
+     * Stops the login pool. Checks still running are abandoned.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Settings(SentinelConfig config, BypassMatcher bypassMatcher) {
+        static Settings of(SentinelConfig config) {
+            return new Settings(config, BypassMatcher.compile(config.bypassServers.servers));
+        }
+    }
+
+    private static final class LoginStepException extends RuntimeException {
+        private final String step;
+        private final boolean failOpen;
+
+        private LoginStepException(String step, boolean failOpen, Throwable cause) {
+            super(step + " failed", cause);
+            this.step = step;
+            this.failOpen = failOpen;
+        }
+    }
 }
@@ -0,0 +1,153 @@
+package com.confect1on.sentinel.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Holds every metric Sentinel records, grouped into families that share a name and help text
+ * and differ by at most one label (e.g. the login stage or the query name).
+ *
+ * Callers look their metrics up once and keep the returned Counter or LatencyHistogram, so
+ * the hot path never touches the registry's maps.
+ */
+public class MetricsRegistry {
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private enum Type { COUNTER, GAUGE, SUMMARY }
+
+    private record Family(String name, String help, Type type, String label, Map<String, Object> metrics) { }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    public Counter counter(String name, String help) {
+        return counter(name, help, null, null);
+    }
+
+    public Counter counter(String name, String help, String label, String value) {
+        return (Counter) family(name, help, Type.COUNTER, label).metrics()
+                .computeIfAbsent(key(value), k -> new Counter());
+    }
+
+    public LatencyHistogram timer(String name, String help) {
+        return timer(name, help, null, null);
+    }
+
+    public LatencyHistogram timer(String name, String help, String label, String value) {
+        return (LatencyHistogram) family(name, help, Type.SUMMARY, label).metrics()
+                .computeIfAbsent(key(value), k -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a value that is read when metrics are collected, such as a pool or cache size.
+     */
+    public void gauge(String name, String help, String label, String value, DoubleSupplier supplier) {
+        family(name, help, Type.GAUGE, label).metrics().put(key(value), supplier);
+    }
+
+    /**
+     * Like a gauge, but for a total that only ever grows and is kept elsewhere.
+     */
+    public void counter(String name, String help, String label, String value, DoubleSupplier supplier) {
+        family(name, help, Type.COUNTER, label).metrics().put(key(value), supplier);
+    }
+
+    /**
+     * Every latency histogram, keyed "name{label=value}", in name order.
+     */
+    public Map<String, LatencyHistogram> timers() {
+        Map<String, LatencyHistogram> timers = new TreeMap<>();
+        for (Family family : families.values()) {
+            if (family.type() != Type.SUMMARY) continue;
+            family.metrics().forEach((value, metric) ->
+                    timers.put(family.name() + labels(family.label(), value, null), (LatencyHistogram) metric));
+        }
+        return timers;
+    }
+
+    /**
+     * Every counter, keyed "name{label=value}", in name order.
+     */
+    public Map<String, Double> counters() {
+        Map<String, Double> counters = new TreeMap<>();
+        for (Family family : families.values()) {
+            if (family.type() != Type.COUNTER) continue;
+            family.metrics().forEach((value, metric) ->
+                    counters.put(family.name() + labels(family.label(), value, null), read(metric)));
+        }
+        return counters;
+    }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format.
+     * Latencies are exported as summaries in seconds.
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name()).append(' ').append(family.help()).append('\n');
+            out.append("# TYPE ").append(family.name()).append(' ').append(family.type().name().toLowerCase(Locale.ROOT)).append('\n');
+            for (Map.Entry<String, Object> entry : new TreeMap<>(family.metrics()).entrySet()) {
+                String value = entry.getKey();
+                if (entry.getValue() instanceof LatencyHistogram histogram) {
+                    for (double quantile : QUANTILES) {
+                        sample(out, family.name(), labels(family.label(), value, quantile), histogram.quantileMillis(quantile) / 1000.0);
+                    }
+                    sample(out, family.name() + "_sum", labels(family.label(), value, null), histogram.sumSeconds());
+                    sample(out, family.name() + "_count", labels(family.label(), value, null), histogram.count());
+                } else {
+                    sample(out, family.name(), labels(family.label(), value, null), read(entry.getValue()));
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private Family family(String name, String help, Type type, String label) {
+        Family family = families.computeIfAbsent(name, n -> new Family(n, help, type, label, new ConcurrentHashMap<>()));
+        if (family.type() != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type());
+        }
+        return family;
+    }
+
+    private static String key(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static double read(Object metric) {
+        if (metric instanceof Counter counter) {
+            return counter.get();
+        }
+        return ((DoubleSupplier) metric).getAsDouble();
+    }
+
+    private static String labels(String label, String value, Double quantile) {
+        boolean hasLabel = label != null && !value.isEmpty();
+        if (!hasLabel && quantile == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder("{");
+        if (hasLabel) {
+            out.append(label).append("=\"").append(value.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        if (quantile != null) {
+            if (hasLabel) out.append(',');
+            out.append("quantile=\"").append(quantile).append('"');
+        }
+        return out.append('}').toString();
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append(labels).append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+}
@@ -0,0 +1,76 @@
+package com.confect1on.sentinel.metrics;
+
+import com.confect1on.sentinel.config.SentinelConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the metrics registry at /metrics in the Prometheus text format.
+ * Binds to localhost by default; the endpoint has no authentication.
+ */
+public class MetricsServer {
+    private final MetricsRegistry metrics;
+    private final SentinelConfig.Metrics config;
+    private final Logger logger;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public MetricsServer(MetricsRegistry metrics, SentinelConfig.Metrics config, Logger logger) {
+        this.metrics = metrics;
+        this.config = config;
+        this.logger = logger;
+    }
+
+    public void start() {
+        if (!config.httpEnabled) {
+            return;
+        }
+        try {
+            server = HttpServer.create(new InetSocketAddress(config.httpHost, config.httpPort), 0);
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "Sentinel-Metrics");
+                t.setDaemon(true);
+                return t;
+            });
+            server.setExecutor(executor);
+            server.createContext("/metrics", this::handle);
+            server.start();
+            logger.info("📈 Serving metrics at http://{}:{}/metrics", config.httpHost, config.httpPort);
+        } catch (IOException e) {
+            logger.error("📈 Failed to start metrics endpoint on {}:{}", config.httpHost, config.httpPort, e);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (RuntimeException e) {
+            logger.error("📈 Error rendering metrics", e);
+        }
+    }
+
+    public void shutdown() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
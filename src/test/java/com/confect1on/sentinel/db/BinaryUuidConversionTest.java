@@ -0,0 +1,109 @@
+package com.confect1on.sentinel.db;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.helpers.NOPLogger;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+import static com.confect1on.sentinel.db.EmbeddedDatabase.execute;
+import static com.confect1on.sentinel.db.EmbeddedDatabase.query;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryUuidConversionTest {
+    private final UUID linked = UUID.randomUUID();
+    private final UUID pending = UUID.randomUUID();
+
+    private HikariDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = EmbeddedDatabase.create();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void uuidsStayVarcharUnlessAskedFor() throws SQLException {
+        assertFalse(migrator(Migrations.ALL).migrate(false));
+        assertEquals(List.of("varchar", "varchar", "varchar"), uuidTypes());
+    }
+
+    @Test
+    void convertsEveryTableAndKeepsEveryRow() throws SQLException {
+        migrator(Migrations.ALL).migrate(false);
+        execute(dataSource,
+                "INSERT INTO linked_accounts (uuid, discord_id, username, username_lower) VALUES ('" + linked + "', '111', 'Steve', 'steve')",
+                "INSERT INTO username_history (uuid, username_lower, username) VALUES ('" + linked + "', 'steve', 'Steve')",
+                "INSERT INTO username_history (uuid, username_lower, username) VALUES ('" + linked + "', 'steve_old', 'Steve_Old')",
+                "INSERT INTO pending_links (uuid, code) VALUES ('" + pending + "', 'ABC123')");
+        // more rows than one backfill batch
+        StringBuilder codes = new StringBuilder("INSERT INTO pending_links (uuid, code) VALUES ");
+        for (int i = 0; i < 2500; i++) {
+            codes.append(i == 0 ? "" : ", ").append("('").append(UUID.randomUUID()).append("', 'C").append(i).append("')");
+        }
+        execute(dataSource, codes.toString());
+
+        assertTrue(migrator(Migrations.ALL).migrate(true));
+
+        assertEquals(List.of("binary", "binary", "binary"), uuidTypes());
+        assertEquals(List.of(hex(linked)), query(dataSource, "SELECT HEX(uuid) FROM linked_accounts WHERE discord_id = '111'"));
+        assertEquals(List.of(hex(pending)), query(dataSource, "SELECT HEX(uuid) FROM pending_links WHERE code = 'ABC123'"));
+        assertEquals(List.of("2501"), query(dataSource, "SELECT COUNT(*) FROM pending_links"));
+        assertEquals(List.of(hex(linked), hex(linked)), query(dataSource, "SELECT HEX(uuid) FROM username_history ORDER BY username_lower"));
+        assertEquals(List.of(), query(dataSource,
+                "SELECT table_name FROM information_schema.columns WHERE table_schema = DATABASE() AND column_name = 'uuid_bin'"));
+        assertEquals(List.of("uuid", "username_lower"), query(dataSource,
+                "SELECT column_name FROM information_schema.key_column_usage WHERE table_schema = DATABASE() "
+                        + "AND table_name = 'username_history' AND constraint_name = 'PRIMARY' ORDER BY ordinal_position"));
+    }
+
+    @Test
+    void convertedDatabaseStaysBinaryWhenTheOptionIsTurnedOff() throws SQLException {
+        migrator(Migrations.ALL).migrate(true);
+
+        assertTrue(migrator(Migrations.ALL).migrate(false));
+        assertEquals(List.of("binary", "binary", "binary"), uuidTypes());
+    }
+
+    @Test
+    void laterMigrationsCopyUuidsCorrectlyOnAnAlreadyConvertedDatabase() throws SQLException {
+        // a database converted by a build that only knew the first two migrations
+        List<Migration> older = Migrations.ALL.subList(0, 2);
+        migrator(older).migrate(false);
+        execute(dataSource, "INSERT INTO linked_accounts (uuid, discord_id, username) VALUES ('" + linked + "', '111', 'Steve')");
+        assertTrue(migrator(older).migrate(true));
+
+        // upgrading runs migration 3, which seeds username_history from linked_accounts
+        assertTrue(migrator(Migrations.ALL).migrate(false));
+
+        assertEquals(List.of("binary", "binary", "binary"), uuidTypes());
+        assertEquals(List.of(hex(linked)), query(dataSource, "SELECT HEX(uuid) FROM username_history WHERE username_lower = 'steve'"));
+        assertEquals(List.of("steve"), query(dataSource, "SELECT username_lower FROM linked_accounts WHERE discord_id = '111'"));
+    }
+
+    private SchemaMigrator migrator(List<Migration> migrations) {
+        return new SchemaMigrator(dataSource, migrations, NOPLogger.NOP_LOGGER);
+    }
+
+    /**
+     * The uuid column type of linked_accounts, pending_links and username_history, in that order.
+     */
+    private List<String> uuidTypes() throws SQLException {
+        return query(dataSource, "SELECT LOWER(data_type) FROM information_schema.columns WHERE table_schema = DATABASE() "
+                + "AND column_name = 'uuid' ORDER BY table_name");
+    }
+
+    private static String hex(UUID uuid) {
+        return uuid.toString().replace("-", "").toUpperCase();
+    }
+}
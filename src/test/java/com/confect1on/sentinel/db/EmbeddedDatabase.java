@@ -0,0 +1,68 @@
+package com.confect1on.sentinel.db;
+
+import ch.vorburger.exec.ManagedProcessException;
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An embedded MariaDB for database tests, started once on first use and stopped with the JVM.
+ * Every caller gets a fresh, empty database of its own.
+ */
+final class EmbeddedDatabase {
+    private static final AtomicInteger databases = new AtomicInteger();
+    private static DB db;
+
+    private EmbeddedDatabase() {
+    }
+
+    static synchronized HikariDataSource create() throws ManagedProcessException {
+        if (db == null) {
+            DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+            config.setPort(0); // any free port
+            db = DB.newEmbeddedDB(config.build());
+            db.start();
+        }
+
+        String name = "sentinel_test_" + databases.incrementAndGet();
+        db.createDB(name);
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("Sentinel-Test");
+        dataSource.setJdbcUrl("jdbc:mysql://localhost:" + db.getConfiguration().getPort() + "/" + name);
+        dataSource.setUsername("root");
+        dataSource.setMaximumPoolSize(2);
+        return dataSource;
+    }
+
+    static void execute(HikariDataSource dataSource, String... statements) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             Statement st = conn.createStatement()) {
+            for (String sql : statements) {
+                st.execute(sql);
+            }
+        }
+    }
+
+    /**
+     * The first column of every row the query returns, as strings.
+     */
+    static List<String> query(HikariDataSource dataSource, String sql) throws SQLException {
+        List<String> values = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,91 @@
+package com.confect1on.sentinel.db;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LinkCacheTest {
+    private static final long TTL_MILLIS = 300;
+
+    private final LinkCache cache = new LinkCache(TTL_MILLIS, TimeUnit.MILLISECONDS, 100);
+    private final LinkInfo link = new LinkInfo(UUID.randomUUID(), "123456789", "Steve");
+
+    @Test
+    void linkIsFoundByEveryKey() {
+        cache.put(link);
+        assertEquals(link, cache.getByUuid(link.uuid()));
+        assertEquals(link, cache.getByDiscordId("123456789"));
+        assertEquals(link, cache.getByUsername("steve"));
+    }
+
+    @Test
+    void expiredLinkIsDroppedFromEveryIndex() throws InterruptedException {
+        cache.put(link);
+        expire();
+
+        assertNull(cache.getByDiscordId("123456789"));
+        assertNull(cache.getByUsername("Steve"));
+        assertNull(cache.getByUuid(link.uuid()));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void linkCachedAgainAfterExpiryIsFoundByEveryKey() throws InterruptedException {
+        cache.put(link);
+        expire();
+        assertNull(cache.getByUuid(link.uuid()));
+
+        cache.put(link);
+        assertEquals(link, cache.getByDiscordId("123456789"));
+        assertEquals(link, cache.getByUsername("steve"));
+    }
+
+    @Test
+    void expiryRacingAPutKeepsTheNewIndexEntries() throws InterruptedException {
+        cache.put(link);
+        expire();
+
+        // hold the cache's lock so the reader removes the expired entry but can't unindex it yet
+        Thread reader;
+        synchronized (cache) {
+            reader = new Thread(() -> cache.getByUuid(link.uuid()));
+            reader.start();
+            while (reader.getState() != Thread.State.BLOCKED && reader.isAlive()) {
+                Thread.onSpinWait();
+            }
+            cache.put(link);
+        }
+        reader.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertEquals(link, cache.getByUuid(link.uuid()));
+        assertEquals(link, cache.getByDiscordId("123456789"));
+        assertEquals(link, cache.getByUsername("steve"));
+    }
+
+    @Test
+    void renamedLinkIsOnlyFoundUnderItsNewName() {
+        cache.put(link);
+        cache.updateUsername(link.uuid(), "Alex");
+
+        assertNull(cache.getByUsername("steve"));
+        assertEquals("Alex", cache.getByUsername("alex").username());
+        assertEquals("Alex", cache.getByDiscordId("123456789").username());
+    }
+
+    @Test
+    void invalidatedLinkIsDroppedFromEveryIndex() {
+        cache.put(link);
+        cache.invalidateDiscordId("123456789");
+
+        assertNull(cache.getByUuid(link.uuid()));
+        assertNull(cache.getByUsername("steve"));
+    }
+
+    private static void expire() throws InterruptedException {
+        Thread.sleep(TTL_MILLIS + 100);
+    }
+}
@@ -0,0 +1,147 @@
+package com.confect1on.sentinel.db;
+
+import com.confect1on.sentinel.db.Migration.Backfill;
+import com.confect1on.sentinel.db.Migration.EnsureColumn;
+import com.confect1on.sentinel.db.Migration.EnsureIndex;
+import com.confect1on.sentinel.db.Migration.Sql;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.helpers.NOPLogger;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static com.confect1on.sentinel.db.EmbeddedDatabase.execute;
+import static com.confect1on.sentinel.db.EmbeddedDatabase.query;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemaMigratorTest {
+    private static final Migration CREATE = new Migration(1, "Create things",
+            new Sql("CREATE TABLE IF NOT EXISTS things (id INT PRIMARY KEY, name VARCHAR(16))"));
+    // not idempotent on purpose: running it twice fails on the primary key
+    private static final Migration SEED = new Migration(2, "Seed things",
+            new Sql("INSERT INTO things (id, name) VALUES (1, 'First')"));
+    private static final Migration INDEX = new Migration(3, "Index things by name",
+            new EnsureIndex("things", "idx_name", "CREATE INDEX idx_name ON things (name)"));
+
+    private HikariDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = EmbeddedDatabase.create();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void appliesMigrationsInVersionOrderAndRecordsTheirChecksums() throws SQLException {
+        migrate(List.of(CREATE, SEED));
+
+        assertEquals(List.of("1", "2"), appliedVersions());
+        assertEquals(List.of("First"), query(dataSource, "SELECT name FROM things"));
+        assertEquals(List.of(Long.toString(CREATE.checksum())),
+                query(dataSource, "SELECT checksum FROM schema_version WHERE version = 1"));
+    }
+
+    @Test
+    void skipsMigrationsThatAlreadyRan() throws SQLException {
+        migrate(List.of(CREATE, SEED));
+        migrate(List.of(CREATE, SEED));
+        migrate(List.of(CREATE, SEED, INDEX));
+
+        assertEquals(List.of("1", "2", "3"), appliedVersions());
+        assertEquals(List.of("1"), query(dataSource, "SELECT COUNT(*) FROM things"));
+        assertEquals(List.of("idx_name"), query(dataSource,
+                "SELECT DISTINCT index_name FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'things' AND index_name = 'idx_name'"));
+    }
+
+    @Test
+    void refusesToStartWhenAnAppliedMigrationWasEdited() throws SQLException {
+        migrate(List.of(CREATE));
+        Migration edited = new Migration(1, "Create things",
+                new Sql("CREATE TABLE IF NOT EXISTS things (id BIGINT PRIMARY KEY, name VARCHAR(16))"));
+
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> migrate(List.of(edited, SEED)));
+        assertTrue(error.getMessage().contains("Checksum mismatch"), error.getMessage());
+        assertEquals(List.of("1"), appliedVersions());
+    }
+
+    @Test
+    void refusesToStartOnADatabaseMigratedByANewerBuild() throws SQLException {
+        migrate(List.of(CREATE, SEED));
+
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> migrate(List.of(CREATE)));
+        assertTrue(error.getMessage().contains("newer version"), error.getMessage());
+    }
+
+    @Test
+    void reRunsAHalfAppliedMigrationFromTheTop() throws SQLException {
+        Migration copy = new Migration(1, "Copy seeds into things",
+                new Sql("CREATE TABLE IF NOT EXISTS things (id INT PRIMARY KEY, name VARCHAR(16))"),
+                new Sql("INSERT IGNORE INTO things (id, name) SELECT id, name FROM seeds"));
+
+        // the first step applies, the second fails: nothing may be recorded
+        assertThrows(SQLException.class, () -> migrate(List.of(copy)));
+        assertEquals(List.of(), appliedVersions());
+
+        execute(dataSource,
+                "CREATE TABLE seeds (id INT PRIMARY KEY, name VARCHAR(16))",
+                "INSERT INTO seeds (id, name) VALUES (1, 'Seeded')");
+        migrate(List.of(copy));
+
+        assertEquals(List.of("1"), appliedVersions());
+        assertEquals(List.of("Seeded"), query(dataSource, "SELECT name FROM things"));
+    }
+
+    @Test
+    void backfillsEveryRowInBatches() throws SQLException {
+        migrate(List.of(CREATE));
+        for (int i = 1; i <= 25; i++) {
+            execute(dataSource, "INSERT INTO things (id, name) VALUES (" + i + ", 'Name" + i + "')");
+        }
+
+        migrate(List.of(CREATE, new Migration(2, "Lowercase names",
+                new EnsureColumn("things", "name_lower", "ALTER TABLE things ADD COLUMN name_lower VARCHAR(16) NULL"),
+                new Backfill("UPDATE things SET name_lower = LOWER(name) WHERE name_lower IS NULL LIMIT ?", 10))));
+
+        assertEquals(List.of("0"), query(dataSource, "SELECT COUNT(*) FROM things WHERE name_lower IS NULL"));
+        assertEquals(List.of("name7"), query(dataSource, "SELECT name_lower FROM things WHERE id = 7"));
+    }
+
+    @Test
+    void releasesTheMigrationLock() throws SQLException {
+        migrate(List.of(CREATE));
+        assertEquals(List.of("1"), query(dataSource, "SELECT IS_FREE_LOCK('sentinel_schema_migration')"));
+
+        assertThrows(SQLException.class, () -> migrate(List.of(CREATE, new Migration(2, "Broken", new Sql("SELECT * FROM missing")))));
+        assertEquals(List.of("1"), query(dataSource, "SELECT IS_FREE_LOCK('sentinel_schema_migration')"));
+    }
+
+    @Test
+    void shippedMigrationsApplyToAnEmptyDatabaseAndAreIdempotent() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator(dataSource, NOPLogger.NOP_LOGGER);
+        assertFalse(migrator.migrate(false));
+        assertFalse(migrator.migrate(false));
+
+        List<String> expected = Migrations.ALL.stream().map(m -> Integer.toString(m.version())).toList();
+        assertEquals(expected, appliedVersions());
+        assertEquals(List.of("linked_accounts", "pending_links", "username_history"), query(dataSource,
+                "SELECT table_name FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name <> 'schema_version' ORDER BY table_name"));
+    }
+
+    private void migrate(List<Migration> migrations) throws SQLException {
+        new SchemaMigrator(dataSource, migrations, NOPLogger.NOP_LOGGER).migrate(false);
+    }
+
+    private List<String> appliedVersions() throws SQLException {
+        return query(dataSource, "SELECT version FROM schema_version ORDER BY version");
+    }
+}
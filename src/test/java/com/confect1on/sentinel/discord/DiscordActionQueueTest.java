@@ -0,0 +1,211 @@
+package com.confect1on.sentinel.discord;
+
+import com.confect1on.sentinel.metrics.MetricsRegistry;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.UserSnowflake;
+import net.dv8tion.jda.api.exceptions.HierarchyException;
+import net.dv8tion.jda.api.requests.restaction.AuditableRestAction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.slf4j.helpers.NOPLogger;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.confect1on.sentinel.discord.DiscordActionQueue.Priority.BACKGROUND;
+import static com.confect1on.sentinel.discord.DiscordActionQueue.Priority.INTERACTIVE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DiscordActionQueueTest {
+    private static final long TIMEOUT_SECONDS = 5;
+
+    /**
+     * A role change handed to Discord; the test decides when it completes.
+     */
+    private record Sent(long userId, long roleId, boolean add,
+                        Consumer<? super Void> success, Consumer<? super Throwable> failure) {
+        void succeed() {
+            success.accept(null);
+        }
+    }
+
+    private final BlockingQueue<Sent> sent = new LinkedBlockingQueue<>();
+    private Guild guild;
+    private Role role;
+    private DiscordActionQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        guild = mock(Guild.class);
+        doAnswer(invocation -> request(invocation, true))
+                .when(guild).addRoleToMember(any(UserSnowflake.class), any(Role.class));
+        doAnswer(invocation -> request(invocation, false))
+                .when(guild).removeRoleFromMember(any(UserSnowflake.class), any(Role.class));
+        role = role(1);
+        queue = new DiscordActionQueue(new MetricsRegistry(), NOPLogger.NOP_LOGGER);
+    }
+
+    @AfterEach
+    void tearDown() {
+        queue.shutdown();
+    }
+
+    @Test
+    void sameChangeTwiceIsSentOnceAndSharesItsOutcome() throws Exception {
+        queue.changeRole(role, 100, true, BACKGROUND);
+        Sent inFlight = next();
+
+        CompletableFuture<Boolean> first = queue.changeRole(role, 200, true, BACKGROUND);
+        CompletableFuture<Boolean> second = queue.changeRole(role, 200, true, BACKGROUND);
+        inFlight.succeed();
+
+        Sent change = next();
+        assertEquals(200, change.userId());
+        assertTrue(change.add());
+        assertFalse(first.isDone());
+        change.succeed();
+
+        assertTrue(first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNothingSent();
+    }
+
+    @Test
+    void oppositeChangeReplacesTheQueuedOne() throws Exception {
+        queue.changeRole(role, 100, true, BACKGROUND);
+        Sent inFlight = next();
+
+        CompletableFuture<Boolean> add = queue.changeRole(role, 200, true, BACKGROUND);
+        CompletableFuture<Boolean> remove = queue.changeRole(role, 200, false, BACKGROUND);
+        assertFalse(add.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        inFlight.succeed();
+
+        Sent change = next();
+        assertEquals(200, change.userId());
+        assertFalse(change.add());
+        change.succeed();
+
+        assertTrue(remove.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNothingSent();
+    }
+
+    @Test
+    void interactiveChangesAreSentBeforeBackgroundOnes() throws Exception {
+        queue.changeRole(role, 100, true, BACKGROUND);
+        Sent inFlight = next();
+
+        queue.changeRole(role, 200, true, BACKGROUND);
+        queue.changeRole(role, 300, true, INTERACTIVE);
+        inFlight.succeed();
+
+        Sent interactive = next();
+        assertEquals(300, interactive.userId());
+        interactive.succeed();
+        assertEquals(200, next().userId());
+    }
+
+    @Test
+    void queuedBackgroundChangeIsPromotedForAnInteractiveCaller() throws Exception {
+        queue.changeRole(role, 100, true, BACKGROUND);
+        Sent inFlight = next();
+
+        CompletableFuture<Boolean> other = queue.changeRole(role, 200, true, BACKGROUND);
+        CompletableFuture<Boolean> sync = queue.changeRole(role, 300, true, BACKGROUND);
+        CompletableFuture<Boolean> link = queue.changeRole(role, 300, true, INTERACTIVE);
+        inFlight.succeed();
+
+        Sent promoted = next();
+        assertEquals(300, promoted.userId());
+        promoted.succeed();
+        assertTrue(sync.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(link.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        Sent rest = next();
+        assertEquals(200, rest.userId());
+        rest.succeed();
+        assertTrue(other.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNothingSent();
+    }
+
+    @Test
+    void synchronousFailureFromJdaDoesNotStallTheQueue() throws Exception {
+        Role aboveBot = role(2);
+        doThrow(new HierarchyException("Can't modify a role with higher or equal highest role than yourself!"))
+                .when(guild).addRoleToMember(any(UserSnowflake.class), eq(aboveBot));
+
+        CompletableFuture<Boolean> rejected = queue.changeRole(aboveBot, 200, true, INTERACTIVE);
+        ExecutionException error = assertThrows(ExecutionException.class, () -> rejected.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertInstanceOf(HierarchyException.class, error.getCause());
+
+        CompletableFuture<Boolean> later = queue.changeRole(role, 300, true, INTERACTIVE);
+        Sent change = next();
+        assertEquals(300, change.userId());
+        change.succeed();
+        assertTrue(later.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shutdownCancelsQueuedChangesAndStillResolvesTheOneInFlight() throws Exception {
+        CompletableFuture<Boolean> first = queue.changeRole(role, 100, true, BACKGROUND);
+        Sent inFlight = next();
+        CompletableFuture<Boolean> queued = queue.changeRole(role, 200, true, BACKGROUND);
+
+        queue.shutdown();
+        assertThrows(CancellationException.class, () -> queued.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        inFlight.succeed();
+        assertTrue(first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertThrows(CancellationException.class,
+                () -> queue.changeRole(role, 300, true, INTERACTIVE).get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private Role role(long id) {
+        Role role = mock(Role.class);
+        when(role.getIdLong()).thenReturn(id);
+        when(role.getGuild()).thenReturn(guild);
+        when(role.getName()).thenReturn("role-" + id);
+        return role;
+    }
+
+    @SuppressWarnings("unchecked")
+    private AuditableRestAction<Void> request(InvocationOnMock invocation, boolean add) {
+        UserSnowflake user = invocation.getArgument(0);
+        Role target = invocation.getArgument(1);
+        AuditableRestAction<Void> request = mock(AuditableRestAction.class);
+        doAnswer(queued -> {
+            sent.add(new Sent(user.getIdLong(), target.getIdLong(), add, queued.getArgument(0), queued.getArgument(1)));
+            return null;
+        }).when(request).queue(any(), any());
+        return request;
+    }
+
+    private Sent next() throws InterruptedException {
+        Sent next = sent.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(next, "expected a role change to be sent");
+        return next;
+    }
+
+    private void assertNothingSent() throws InterruptedException {
+        assertNull(sent.poll(200, TimeUnit.MILLISECONDS), "expected no further role changes");
+    }
+}
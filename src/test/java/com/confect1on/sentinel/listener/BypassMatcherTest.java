@@ -0,0 +1,128 @@
+package com.confect1on.sentinel.listener;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BypassMatcherTest {
+
+    private static BypassMatcher compile(String... entries) {
+        return BypassMatcher.compile(entries);
+    }
+
+    @Test
+    void plainEntryMatchesAnywhereInTheHost() {
+        BypassMatcher matcher = compile("lobby");
+        assertTrue(matcher.matches("lobby"));
+        assertTrue(matcher.matches("lobby.example.net"));
+        assertTrue(matcher.matches("mylobby2.example.net"));
+        assertFalse(matcher.matches("lob.example.net"));
+    }
+
+    @Test
+    void exactEntryMatchesOnlyTheWholeHost() {
+        BypassMatcher matcher = compile("=auth.example.net");
+        assertTrue(matcher.matches("auth.example.net"));
+        assertFalse(matcher.matches("x.auth.example.net"));
+        assertFalse(matcher.matches("auth.example.net.evil"));
+        assertFalse(matcher.matches("auth.example"));
+    }
+
+    @Test
+    void suffixEntryMatchesSubdomainsOnly() {
+        BypassMatcher matcher = compile("*.example.net");
+        assertTrue(matcher.matches("a.example.net"));
+        assertTrue(matcher.matches("a.b.example.net"));
+        assertFalse(matcher.matches("example.net"));
+        assertFalse(matcher.matches("a.example.net.evil"));
+        assertFalse(matcher.matches("aexample.net"));
+    }
+
+    @Test
+    void prefixEntryMatchesTheStartOfTheHost() {
+        BypassMatcher matcher = compile("test.*");
+        assertTrue(matcher.matches("test.example.net"));
+        assertFalse(matcher.matches("atest.example.net"));
+    }
+
+    @Test
+    void doubleWildcardEntryMatchesAnywhere() {
+        BypassMatcher matcher = compile("*lobby*");
+        assertTrue(matcher.matches("a.lobby.b"));
+        assertFalse(matcher.matches("a.lob.b"));
+    }
+
+    @Test
+    void matchingIgnoresCase() {
+        BypassMatcher matcher = compile("LoBBy", "=Auth.Example.NET", "*.Example.Org");
+        assertTrue(matcher.matches("LOBBY.example.net"));
+        assertTrue(matcher.matches("auth.EXAMPLE.net"));
+        assertTrue(matcher.matches("play.example.ORG"));
+    }
+
+    @Test
+    void trailingDotOnTheHostIsIgnored() {
+        BypassMatcher matcher = compile("=auth.example.net", "*.example.org");
+        assertTrue(matcher.matches("auth.example.net."));
+        assertTrue(matcher.matches("play.example.org."));
+    }
+
+    @Test
+    void overlappingEntriesAreAllFound() {
+        BypassMatcher matcher = compile("he", "she", "hers");
+        assertTrue(matcher.matches("ushers"));
+        assertTrue(matcher.matches("xhex"));
+        assertFalse(matcher.matches("hxs"));
+    }
+
+    @Test
+    void blankEntriesAndEmptyConfigsMatchNothing() {
+        assertFalse(compile().matches("lobby"));
+        assertFalse(BypassMatcher.compile(null).matches("lobby"));
+        BypassMatcher matcher = compile("", " ", "=", "*", null);
+        assertFalse(matcher.matches("lobby.example.net"));
+        assertEquals(List.of(), matcher.rejected());
+    }
+
+    @Test
+    void emptyOrMissingHostNeverMatches() {
+        BypassMatcher matcher = compile("lobby");
+        assertFalse(matcher.matches(""));
+        assertFalse(matcher.matches(null));
+    }
+
+    @Test
+    void nonAsciiEntryDoesNotMatchUnrelatedHosts() {
+        BypassMatcher matcher = compile("é");
+        assertFalse(matcher.matches("play.example.net"));
+        assertFalse(matcher.matches("lobby"));
+        assertFalse(matcher.matches("ü.example.net"));
+    }
+
+    @Test
+    void nonAsciiEntryIsMatchedInPunycode() {
+        BypassMatcher matcher = compile("*.exämple.net", "lobby");
+        assertTrue(matcher.matches("play.xn--exmple-cua.net"));
+        assertFalse(matcher.matches("play.example.net"));
+        assertTrue(matcher.matches("lobby.xn--exmple-cua.net"));
+    }
+
+    @Test
+    void nonAsciiHostCharactersDoNotBreakMatching() {
+        BypassMatcher matcher = compile("lobby");
+        assertTrue(matcher.matches("ä.lobby"));
+        assertFalse(matcher.matches("lobäby"));
+    }
+
+    @Test
+    void entriesWithAnchorCharactersAreRejected() {
+        BypassMatcher matcher = compile("a^b", "c$", "lobby");
+        assertEquals(List.of("a^b", "c$"), matcher.rejected());
+        assertTrue(matcher.matches("lobby"));
+        assertFalse(matcher.matches("a^b"));
+    }
+}